@@ -0,0 +1,103 @@
+package subbox.services;
+
+import com.google.api.services.youtube.model.Channel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+class FakeYouTubeService implements YouTubeService {
+
+    private static final long EPOCH = 1_500_000_000_000L;
+
+    @NotNull
+    private final ConcurrentHashMap<String, Integer> versions = new ConcurrentHashMap<>();
+
+    private volatile long latencyNanos;
+    private volatile double changeRate;
+
+    void setLatency(@NotNull Duration latency) {
+        this.latencyNanos = latency.toNanos();
+    }
+
+    void setChangeRate(double changeRate) {
+        this.changeRate = changeRate;
+    }
+
+    @NotNull
+    @Override
+    public Optional<Channel> getChannel(@NotNull String channelId) {
+        throw new UnsupportedOperationException("getChannel");
+    }
+
+    @NotNull
+    @Override
+    public List<Channel> getChannels(@NotNull List<String> channelIds) {
+        throw new UnsupportedOperationException("getChannels");
+    }
+
+    @NotNull
+    @Override
+    public Map<String, String> getPlaylistETags(@NotNull List<String> playlistIds) {
+        simulateLatency();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<String, String> eTags = new HashMap<>();
+        for (String playlistId : playlistIds) {
+            int version = random.nextDouble() < changeRate
+                    ? versions.merge(playlistId, 1, Integer::sum)
+                    : versions.getOrDefault(playlistId, 0);
+            eTags.put(playlistId, "\"" + playlistId + "/" + version + "\"");
+        }
+        return eTags;
+    }
+
+    @NotNull
+    @Override
+    public PlaylistPage getVideos(@NotNull String playlistId, @Nullable String pageToken, long maxVideos) {
+        simulateLatency();
+        int offset = pageToken != null ? Integer.parseInt(pageToken) : 0;
+        int version = versions.getOrDefault(playlistId, 0);
+        List<CachedVideo> videos = new ArrayList<>((int) maxVideos);
+        for (int i = 0; i < maxVideos; i++) {
+            int index = offset + i;
+            long publishedAt = EPOCH + (long) playlistId.hashCode() * 1000 - index * 3_600_000L + version;
+            videos.add(new CachedVideo(
+                    playlistId + "-" + index,
+                    "UC" + playlistId.substring(2),
+                    publishedAt,
+                    "Video " + index + " of " + playlistId,
+                    "https://i.ytimg.com/vi/" + playlistId + "-" + index + "/default.jpg",
+                    120,
+                    90));
+        }
+        videos.sort(DEFAULT_VIDEO_COMPARATOR);
+        return new PlaylistPage(videos, String.valueOf(offset + maxVideos));
+    }
+
+    @NotNull
+    static List<String> playlistIds(int count) {
+        List<String> playlistIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            playlistIds.add(String.format("UU%022d", i));
+        }
+        return playlistIds;
+    }
+
+    private void simulateLatency() {
+        long nanos = latencyNanos;
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import subbox.model.CachedVideo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static subbox.services.YouTubeService.DEFAULT_VIDEO_COMPARATOR;
+
+public final class FeedEncodingBenchmark {
+
+    private FeedEncodingBenchmark() {
+    }
+
+    public static void main(@NotNull String[] args) throws IOException {
+        int perPage = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+        int pageCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        List<List<CachedVideo>> pages = pages(perPage, pageCount);
+        System.out.printf("%-6s %12s %12s %14s %12s%n", "format", "bytes/page", "gzip/page", "pages/s", "MB/s");
+        for (FeedFormat format : FeedFormat.values()) {
+            long bytes = 0;
+            long gzipBytes = 0;
+            for (List<CachedVideo> page : pages) {
+                byte[] encoded = format.write(page);
+                bytes += encoded.length;
+                gzipBytes += gzip(encoded).length;
+            }
+
+            for (int i = 0; i < iterations / 2; i++) {
+                encodeAll(format, pages);
+            }
+            long start = System.nanoTime();
+            long encodedBytes = 0;
+            for (int i = 0; i < iterations; i++) {
+                encodedBytes += encodeAll(format, pages);
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-6s %12d %12d %14.0f %12.1f%n",
+                    format, bytes / pageCount, gzipBytes / pageCount,
+                    iterations * pageCount / seconds, encodedBytes / seconds / (1 << 20));
+        }
+    }
+
+    private static long encodeAll(@NotNull FeedFormat format, @NotNull List<List<CachedVideo>> pages) {
+        long bytes = 0;
+        for (List<CachedVideo> page : pages) {
+            bytes += format.write(page).length;
+        }
+        return bytes;
+    }
+
+    @NotNull
+    private static List<List<CachedVideo>> pages(int perPage, int pageCount) {
+        FakeYouTubeService youTubeService = new FakeYouTubeService();
+        List<String> playlistIds = FakeYouTubeService.playlistIds(pageCount + 10);
+        List<List<CachedVideo>> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            List<CachedVideo> page = new ArrayList<>(perPage);
+            for (String playlistId : playlistIds.subList(i, i + 10)) {
+                page.addAll(youTubeService.getVideos(playlistId, null, perPage).getVideos());
+            }
+            page.sort(DEFAULT_VIDEO_COMPARATOR);
+            pages.add(page.subList(0, perPage));
+        }
+        return pages;
+    }
+
+    @NotNull
+    private static byte[] gzip(@NotNull byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+}
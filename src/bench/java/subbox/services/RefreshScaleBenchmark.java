@@ -0,0 +1,308 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import subbox.util.DurationFormatter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class RefreshScaleBenchmark {
+
+    @NotNull
+    private static final String CSV_HEADER = "label,playlists,fillMs,heapBytesPerPlaylist,evictScanMs,sweepMs,refreshed," +
+            "sweepThreadAllocatedMb,totalAllocatedMb,gcCount,gcMs,baselineP50Us,baselineP99Us,sweepP50Us,sweepP99Us,sweepMaxUs";
+
+    private RefreshScaleBenchmark() {
+    }
+
+    public static void main(@NotNull String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int[] sizes = Arrays.stream(options.getOrDefault("sizes", "10000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt)
+                .toArray();
+        Duration latency = Duration.parse(options.getOrDefault("latency", "PT0.05S"));
+        double changeRate = Double.parseDouble(options.getOrDefault("change-rate", "0.01"));
+        int requestThreads = Integer.parseInt(options.getOrDefault("request-threads", "8"));
+        int channelsPerRequest = Integer.parseInt(options.getOrDefault("channels-per-request", "30"));
+        Duration baseline = Duration.parse(options.getOrDefault("baseline", "PT5S"));
+        String storage = options.getOrDefault("storage", "heap");
+        String label = options.getOrDefault("label", "unlabelled") + "/" + storage;
+        Path output = Paths.get(options.getOrDefault("output", "build/reports/benchmarks/refresh-scale.csv"));
+
+        List<String> rows = new ArrayList<>();
+        for (int size : sizes) {
+            String row = label + "," + run(size, storage, latency, changeRate, requestThreads, channelsPerRequest, baseline);
+            System.out.println(CSV_HEADER);
+            System.out.println(row);
+            rows.add(row);
+        }
+        writeCsv(output, rows);
+    }
+
+    @NotNull
+    private static String run(int size,
+                              @NotNull String storage,
+                              @NotNull Duration latency,
+                              double changeRate,
+                              int requestThreads,
+                              int channelsPerRequest,
+                              @NotNull Duration baseline) throws Exception {
+        System.out.printf("=== %d playlists, latency %s, change rate %s%n", size, DurationFormatter.format(latency), changeRate);
+        FakeYouTubeService youTubeService = new FakeYouTubeService();
+        RefreshingVideoCache cache = new RefreshingVideoCache(youTubeService, new WebSubSubscriber());
+        configure(cache, storage);
+        cache.init();
+        try {
+            List<String> playlistIds = FakeYouTubeService.playlistIds(size);
+
+            long heapBefore = usedHeapAfterGc();
+            long fillStart = System.nanoTime();
+            for (int i = 0; i < size; i += 1000) {
+                cache.get(playlistIds.subList(i, Math.min(i + 1000, size))).get();
+            }
+            long fillNanos = System.nanoTime() - fillStart;
+            long heapPerPlaylist = (usedHeapAfterGc() - heapBefore) / size;
+
+            youTubeService.setLatency(latency);
+            youTubeService.setChangeRate(changeRate);
+
+            RequestLoad load = new RequestLoad(cache, playlistIds, channelsPerRequest);
+            load.start(requestThreads);
+            Thread.sleep(baseline.toMillis());
+            long[] baselineLatencies = load.switchPhase();
+
+            long gcCountBefore = gcCount();
+            long gcMillisBefore = gcMillis();
+            long totalAllocatedBefore = totalAllocatedBytes();
+            long sweepThreadAllocatedBefore = currentThreadAllocatedBytes();
+
+            long evictStart = System.nanoTime();
+            cache.evict();
+            long evictNanos = System.nanoTime() - evictStart;
+
+            long sweepStart = System.nanoTime();
+            int refreshed = cache.refresh(ZonedDateTime.now().plusYears(1));
+            long sweepNanos = System.nanoTime() - sweepStart;
+
+            long sweepThreadAllocated = currentThreadAllocatedBytes() - sweepThreadAllocatedBefore;
+            long totalAllocated = totalAllocatedBytes() - totalAllocatedBefore;
+            long gcCount = gcCount() - gcCountBefore;
+            long gcMillis = gcMillis() - gcMillisBefore;
+            long[] sweepLatencies = load.stop();
+
+            return String.join(",",
+                    String.valueOf(size),
+                    String.valueOf(fillNanos / 1_000_000),
+                    String.valueOf(heapPerPlaylist),
+                    String.valueOf(evictNanos / 1_000_000),
+                    String.valueOf(sweepNanos / 1_000_000),
+                    String.valueOf(refreshed),
+                    String.valueOf(sweepThreadAllocated >> 20),
+                    String.valueOf(totalAllocated >> 20),
+                    String.valueOf(gcCount),
+                    String.valueOf(gcMillis),
+                    String.valueOf(percentile(baselineLatencies, 0.50) / 1000),
+                    String.valueOf(percentile(baselineLatencies, 0.99) / 1000),
+                    String.valueOf(percentile(sweepLatencies, 0.50) / 1000),
+                    String.valueOf(percentile(sweepLatencies, 0.99) / 1000),
+                    String.valueOf(percentile(sweepLatencies, 1.0) / 1000));
+        } finally {
+            cache.destroy();
+        }
+    }
+
+    private static void configure(@NotNull RefreshingVideoCache cache, @NotNull String storage) {
+        cache.setEvictionThreshold(Duration.ofDays(1));
+        cache.setUpdatePeriod(Duration.ofDays(1));
+        cache.setInitialVideosPerPlaylist(20);
+        cache.setVideosPerPlaylist(100);
+        cache.setPushFallbackPollPeriod(Duration.ofDays(1));
+        cache.setPushMinRefreshInterval(Duration.ofMinutes(1));
+        cache.setProbeParallelism(0);
+        cache.setMaxProbeFailures(3);
+        cache.setStorage(storage);
+        cache.setOffHeapSlabSize(64 << 20);
+        cache.setOffHeapMaxSlabs(1024);
+    }
+
+    private static class RequestLoad {
+        @NotNull
+        private final RefreshingVideoCache cache;
+        @NotNull
+        private final List<String> playlistIds;
+        private final int channelsPerRequest;
+        @NotNull
+        private final List<Thread> threads = new ArrayList<>();
+        @NotNull
+        private final List<LongList> latencies = new ArrayList<>();
+        private volatile boolean running = true;
+        private volatile int phase;
+
+        RequestLoad(@NotNull RefreshingVideoCache cache, @NotNull List<String> playlistIds, int channelsPerRequest) {
+            this.cache = cache;
+            this.playlistIds = playlistIds;
+            this.channelsPerRequest = channelsPerRequest;
+        }
+
+        void start(int threadCount) {
+            for (int i = 0; i < threadCount; i++) {
+                LongList[] phaseLatencies = {new LongList(), new LongList()};
+                latencies.add(phaseLatencies[0]);
+                latencies.add(phaseLatencies[1]);
+                Thread thread = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    List<String> request = new ArrayList<>(channelsPerRequest);
+                    while (running) {
+                        request.clear();
+                        for (int j = 0; j < channelsPerRequest; j++) {
+                            request.add(playlistIds.get(random.nextInt(playlistIds.size())));
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            cache.get(request).get();
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        phaseLatencies[phase].add(System.nanoTime() - start);
+                    }
+                }, "bench-request-" + i);
+                threads.add(thread);
+                thread.start();
+            }
+        }
+
+        @NotNull
+        long[] switchPhase() {
+            phase = 1;
+            return collect(0);
+        }
+
+        @NotNull
+        long[] stop() throws InterruptedException {
+            running = false;
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return collect(1);
+        }
+
+        @NotNull
+        private long[] collect(int phase) {
+            LongList merged = new LongList();
+            for (int i = phase; i < latencies.size(); i += 2) {
+                merged.addAll(latencies.get(i));
+            }
+            long[] values = merged.toArray();
+            Arrays.sort(values);
+            return values;
+        }
+    }
+
+    private static class LongList {
+        @NotNull
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        synchronized void addAll(@NotNull LongList other) {
+            for (long value : other.toArray()) {
+                add(value);
+            }
+        }
+
+        @NotNull
+        synchronized long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private static long percentile(@NotNull long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static long usedHeapAfterGc() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans()
+                .stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount)
+                .sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans()
+                .stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime)
+                .sum();
+    }
+
+    private static long totalAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return Arrays.stream(threads.getThreadAllocatedBytes(threads.getAllThreadIds()))
+                .filter(bytes -> bytes > 0)
+                .sum();
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @NotNull
+    private static Map<String, String> parseOptions(@NotNull String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator > 0) {
+                options.put(option.substring(0, separator), option.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static void writeCsv(@NotNull Path output, @NotNull List<String> rows) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        boolean writeHeader = !Files.exists(output);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            if (writeHeader) {
+                writer.println(CSV_HEADER);
+            }
+            rows.forEach(writer::println);
+        }
+        System.out.println("Results appended to " + output.toAbsolutePath());
+    }
+
+}
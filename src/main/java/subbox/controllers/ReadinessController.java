@@ -0,0 +1,33 @@
+package subbox.controllers;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import subbox.services.CacheWarmer;
+
+import java.util.Map;
+
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+
+@RestController
+public class ReadinessController {
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @NotNull
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, ?>> ready() {
+        boolean ready = cacheWarmer.isReady();
+        return ResponseEntity.status(ready ? OK : SERVICE_UNAVAILABLE)
+                .body(Map.of(
+                        "ready", ready,
+                        "warmedChannels", cacheWarmer.getWarmedChannels(),
+                        "targetChannels", cacheWarmer.getTargetChannels()
+                ));
+    }
+
+}
@@ -0,0 +1,37 @@
+package subbox.controllers;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import subbox.services.RefreshingVideoCache;
+import subbox.services.ResponsePageCache;
+import subbox.services.YouTubeServiceImpl;
+
+import java.util.Map;
+
+@RestController
+public class StatsController {
+
+    @Autowired
+    private ResponsePageCache responsePageCache;
+    @Autowired
+    private RefreshingVideoCache videoCache;
+    @Autowired
+    private YouTubeServiceImpl youTubeService;
+    @Autowired
+    private SubBoxController subBoxController;
+
+    @NotNull
+    @GetMapping("/stats")
+    public Map<String, ?> stats() {
+        return Map.of(
+                "pageCache", responsePageCache.getStats(),
+                "videoStorage", videoCache.getStorageStats(),
+                "diskTier", videoCache.getDiskTierStats(),
+                "apiKeys", youTubeService.getApiKeyUsage(),
+                "collapsing", subBoxController.getCollapsingStats()
+        );
+    }
+
+}
@@ -1,56 +1,368 @@
 package subbox.controllers;
 
-import com.google.api.services.youtube.model.Video;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import subbox.model.CachedVideo;
+import subbox.services.AccessHistory;
 import subbox.services.AsyncVideoService;
-import subbox.services.YouTubeService;
+import subbox.services.CachedPlaylist;
+import subbox.services.FeedFormat;
+import subbox.services.ResponsePageCache;
+import subbox.util.ApiKeyPool;
+import subbox.util.CircuitBreaker;
+import subbox.util.CompositeFuture;
+import subbox.util.ContentCodings;
 import subbox.util.MoreIterators;
+import subbox.util.ParallelMerge;
+import subbox.util.RequestTimings;
+import subbox.util.SingleFlight;
+import subbox.util.SortKeyIterator;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.validation.constraints.*;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
+import static java.util.Comparator.comparingLong;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
 
 @RestController
 @Validated
 public class SubBoxController {
 
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(SubBoxController.class);
+    @NotNull
+    private static final Logger traceLog = LoggerFactory.getLogger("subbox.trace");
+
+    @NotNull
+    private static final String STALE_WARNING = "110 - \"Response is Stale\"";
+    @NotNull
+    private static final String SERVER_TIMING = "Server-Timing";
+    @NotNull
+    private static final String MISSING_CHANNELS = "X-Missing-Channels";
+    @NotNull
+    private static final String INCOMPLETE_CHANNELS = "X-Incomplete-Channels";
+    @NotNull
+    private static final String PARTIAL_RETRY_AFTER = "1";
+    private static final int TRACED_SLOWEST_LOADS = 5;
+    private static final long MAX_DEADLINE_MILLIS = 60_000;
+
+    private static double traceSampleRate;
+    private static Duration defaultDeadline;
+    private static int mergeParallelism;
+    private static int parallelMinPlaylists;
+    private static long parallelMinItems;
+
+    @NotNull
+    private final SingleFlight<List<Object>, CollapsedPage> inFlightPages = new SingleFlight<>();
     @Autowired
     private AsyncVideoService videoService;
+    @Autowired
+    private AccessHistory accessHistory;
+    @Autowired
+    private ResponsePageCache responsePageCache;
+    @Autowired
+    private ObjectMapper objectMapper;
+    private ForkJoinPool mergePool;
+
+    @Value("${subbox.trace.sample-rate}")
+    public void setTraceSampleRate(double traceSampleRate) {
+        SubBoxController.traceSampleRate = traceSampleRate;
+    }
+
+    @Value("${subbox.videos.default-deadline}")
+    public void setDefaultDeadline(@NotNull Duration defaultDeadline) {
+        SubBoxController.defaultDeadline = defaultDeadline;
+    }
+
+    @Value("${subbox.merge.parallelism}")
+    public void setMergeParallelism(int mergeParallelism) {
+        SubBoxController.mergeParallelism = mergeParallelism > 0
+                ? mergeParallelism
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    @Value("${subbox.merge.parallel-min-playlists}")
+    public void setParallelMinPlaylists(int parallelMinPlaylists) {
+        SubBoxController.parallelMinPlaylists = parallelMinPlaylists;
+    }
+
+    @Value("${subbox.merge.parallel-min-items}")
+    public void setParallelMinItems(long parallelMinItems) {
+        SubBoxController.parallelMinItems = parallelMinItems;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (mergeParallelism > 1) {
+            log.info("Initializing merge pool of {} threads", mergeParallelism);
+            mergePool = new ForkJoinPool(mergeParallelism);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (mergePool != null) {
+            log.info("Shutting down merge pool");
+            mergePool.shutdown();
+        }
+    }
 
     @NotNull
     @GetMapping("/videos")
-    public List<Video> videos(@RequestParam("channelIds") @NotNull @NotEmpty Set<@NotBlank String> channelIds,
-                              @RequestParam(name = "perPage", defaultValue = "20") @Positive @Max(50) int perPage,
-                              @RequestParam(name = "page", defaultValue = "0") @PositiveOrZero long page) throws ExecutionException {
-        Future<List<List<Video>>> uploadedVideos = videoService.getUploadedVideos(new ArrayList<>(channelIds));
+    public ResponseEntity<byte[]> videos(@RequestParam("channelIds") @NotNull @NotEmpty Set<@NotBlank String> channelIds,
+                                         @RequestParam(name = "perPage", defaultValue = "20") @Positive @Max(50) int perPage,
+                                         @RequestParam(name = "page", defaultValue = "0") @PositiveOrZero long page,
+                                         @RequestParam(name = "deadline", required = false) @Nullable @Positive Long deadline,
+                                         @RequestHeader(name = HttpHeaders.ACCEPT, required = false) @Nullable String accept,
+                                         @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) @Nullable String acceptEncoding) throws ExecutionException {
+        long start = System.nanoTime();
+        long deadlineNanos = deadlineNanos(deadline);
+        boolean sampled = traceSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < traceSampleRate;
+        RequestTimings timings = RequestTimings.start(sampled);
+        try {
+            List<String> sortedChannelIds = new ArrayList<>(new TreeSet<>(channelIds));
+            SingleFlight.Result<CollapsedPage> result = inFlightPages.execute(List.of(sortedChannelIds, perPage, page, deadlineNanos), () -> {
+                CompositeFuture<String, CachedPlaylist> uploadedVideos = videoService.getUploadedVideos(sortedChannelIds);
+                try (RequestTimings.Stage ignored = RequestTimings.stage("playlists")) {
+                    return new CollapsedPage(await(uploadedVideos, start, deadlineNanos), perPage, page, start, deadlineNanos);
+                }
+            });
+            RequestTimings.record("collapsed", result.isCollapsed());
+            // recorded once the channels are known to exist, for collapsed requests as well
+            accessHistory.record(sortedChannelIds);
+            CollapsedPage collapsedPage = result.getValue();
+            List<CachedPlaylist> playlists = collapsedPage.playlists;
+            List<String> missingChannelIds = collapsedPage.missingChannelIds;
+            RequestTimings.record("missingChannels", missingChannelIds.size());
+
+            FeedFormat format = FeedFormat.negotiate(accept);
+            ResponsePageCache.Encoding encoding = ContentCodings.accepts(acceptEncoding, "gzip")
+                    ? ResponsePageCache.Encoding.GZIP
+                    : ResponsePageCache.Encoding.IDENTITY;
+            // a partial page would be served in place of the complete one until a playlist changes
+            byte[] body = missingChannelIds.isEmpty()
+                    ? responsePageCache.get(sortedChannelIds, perPage, page, format, encoding, playlists,
+                    () -> render(collapsedPage, format), collapsedPage::isComplete)
+                    : responsePageCache.bypass(encoding, () -> render(collapsedPage, format));
+            List<String> incompleteChannelIds = collapsedPage.getIncompleteChannelIds();
+            RequestTimings.record("incompleteChannels", incompleteChannelIds.size());
+
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(format.getMediaType())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+            if (encoding == ResponsePageCache.Encoding.GZIP) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            if (playlists.stream().anyMatch(CachedPlaylist::isStale)) {
+                response.header(HttpHeaders.WARNING, STALE_WARNING);
+            }
+            if (!missingChannelIds.isEmpty()) {
+                response.header(MISSING_CHANNELS, String.join(",", missingChannelIds));
+            }
+            if (!incompleteChannelIds.isEmpty()) {
+                response.header(INCOMPLETE_CHANNELS, String.join(",", incompleteChannelIds));
+            }
+            if (!missingChannelIds.isEmpty() || !incompleteChannelIds.isEmpty()) {
+                response.header(HttpHeaders.RETRY_AFTER, PARTIAL_RETRY_AFTER);
+            }
+            response.header(SERVER_TIMING, timings.toServerTiming());
+            if (sampled) {
+                logTrace(timings, start, playlists, perPage, page);
+            }
+            return response.body(body);
+        } finally {
+            RequestTimings.end();
+        }
+    }
 
-        List<Iterator<Video>> videoIterators = getUninterrupted(uploadedVideos)
+    @NotNull
+    public Map<String, ?> getCollapsingStats() {
+        return inFlightPages.getStats();
+    }
+
+    @NotNull
+    private static byte[] render(@NotNull CollapsedPage collapsedPage, @NotNull FeedFormat format) {
+        List<CachedVideo> videos = collapsedPage.getMergedPage().videos;
+        try (RequestTimings.Stage ignored = RequestTimings.stage("serialize")) {
+            return format.write(videos);
+        }
+    }
+
+    private void logTrace(@NotNull RequestTimings timings, long start, @NotNull List<CachedPlaylist> playlists, int perPage, long page) {
+        RequestTimings.record("channels", playlists.size());
+        RequestTimings.record("perPage", perPage);
+        RequestTimings.record("page", page);
+        // playlists loaded before this request were served from the cache and did not delay it
+        RequestTimings.record("slowestLoads", playlists.stream()
+                .filter(playlist -> playlist.getLoadedAt() - start >= 0)
+                .sorted(comparingLong(CachedPlaylist::getLoadNanos).reversed())
+                .limit(TRACED_SLOWEST_LOADS)
+                .map(playlist -> Map.of("playlistId", playlist.getPlaylistId(), "loadMs", playlist.getLoadNanos() / 1e6))
+                .collect(toList()));
+        try {
+            traceLog.info("{}", objectMapper.writeValueAsString(timings.toTrace()));
+        } catch (JsonProcessingException e) {
+            traceLog.warn("Failed to serialize request trace", e);
+        }
+    }
+
+    // with a deadline, deeper pages are waited for only until it passes and the channels they are missing are returned
+    @NotNull
+    private MergedPage merge(@NotNull List<CachedPlaylist> playlists,
+                             @NotNull List<String> channelIds,
+                             int perPage,
+                             long page,
+                             @Nullable Long deadline) {
+        if (mergePool != null && (playlists.size() >= parallelMinPlaylists || perPage * (page + 1) >= parallelMinItems)) {
+            List<CachedPlaylist.Snapshot> snapshots = playlists
+                    .stream()
+                    .map(CachedPlaylist::snapshot)
+                    .collect(toList());
+            // Falls back to the lazy sequential merge when the page reaches past the loaded videos
+            List<CachedVideo> videos;
+            try {
+                videos = ParallelMerge.merge(snapshots, perPage * page, perPage, mergePool, mergeParallelism);
+            } finally {
+                snapshots.forEach(CachedPlaylist.Snapshot::close);
+            }
+            RequestTimings.record("parallelMerge", videos != null);
+            if (videos != null) {
+                return new MergedPage(videos, List.of());
+            }
+        }
+
+        List<CachedPlaylist.LazyIterator> videoIterators = playlists
                 .stream()
-                .map(List::iterator)
+                .map(playlist -> deadline != null ? playlist.iterator(videoService::loadNextPage, deadline) : playlist.iterator())
                 .collect(toList());
+        try {
+            SortKeyIterator<CachedVideo> mergedIterator = MoreIterators.mergeSortedByKey(videoIterators);
+            for (long skipped = 0; skipped < perPage * page && mergedIterator.hasNext(); skipped++) {
+                mergedIterator.skip();
+            }
 
-        Iterator<Video> mergedIterator = MoreIterators.mergeSorted(videoIterators, YouTubeService.DEFAULT_VIDEO_COMPARATOR);
-        Spliterator<Video> spliterator = Spliterators.spliteratorUnknownSize(mergedIterator, 0);
-        return StreamSupport.stream(spliterator, false)
-                .skip(perPage * page)
-                .limit(perPage)
-                .collect(toList());
+            List<CachedVideo> videos = new ArrayList<>(perPage);
+            while (videos.size() < perPage && mergedIterator.hasNext()) {
+                videos.add(mergedIterator.next());
+            }
+
+            List<String> incompleteChannelIds = new ArrayList<>();
+            for (int i = 0; i < videoIterators.size(); i++) {
+                if (videoIterators.get(i).isTruncated()) {
+                    incompleteChannelIds.add(channelIds.get(i));
+                }
+            }
+            return new MergedPage(videos, incompleteChannelIds);
+        } finally {
+            videoIterators.forEach(CachedPlaylist.LazyIterator::close);
+        }
     }
 
-    private <V> V getUninterrupted(Future<V> future) throws ExecutionException {
+    // deadlines above the maximum are capped rather than rejected
+    static long deadlineNanos(@Nullable Long deadline) {
+        return deadline != null ? MILLISECONDS.toNanos(Math.min(deadline, MAX_DEADLINE_MILLIS)) : defaultDeadline.toNanos();
+    }
+
+    @NotNull
+    private static CompositeFuture.Partial<String, CachedPlaylist> await(@NotNull CompositeFuture<String, CachedPlaylist> future,
+                                                                         long start,
+                                                                         long deadlineNanos) throws ExecutionException {
+        // loads that miss the deadline keep running and warm the cache for the retry
+        long timeout = deadlineNanos > 0 ? deadlineNanos - (System.nanoTime() - start) : Long.MAX_VALUE;
         try {
-            return future.get();
+            return future.getAvailable(timeout, NANOSECONDS);
         } catch (InterruptedException e) {
             throw new Error("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CircuitBreaker.OpenException) {
+                throw (CircuitBreaker.OpenException) e.getCause();
+            }
+            if (e.getCause() instanceof ApiKeyPool.ExhaustedException) {
+                throw (ApiKeyPool.ExhaustedException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class MergedPage {
+        @NotNull
+        private final List<CachedVideo> videos;
+        @NotNull
+        private final List<String> incompleteChannelIds;
+
+        MergedPage(@NotNull List<CachedVideo> videos, @NotNull List<String> incompleteChannelIds) {
+            this.videos = videos;
+            this.incompleteChannelIds = incompleteChannelIds;
+        }
+    }
+
+    private class CollapsedPage {
+        @NotNull
+        private final List<CachedPlaylist> playlists;
+        @NotNull
+        private final List<String> channelIds;
+        @NotNull
+        private final List<String> missingChannelIds;
+        private final int perPage;
+        private final long page;
+        @Nullable
+        private final Long mergeDeadline;
+        @Nullable
+        private MergedPage mergedPage;
+
+        CollapsedPage(@NotNull CompositeFuture.Partial<String, CachedPlaylist> loaded, int perPage, long page, long start, long deadlineNanos) {
+            this.playlists = loaded.getValues();
+            this.channelIds = loaded.getKeys();
+            this.missingChannelIds = loaded.getMissingKeys();
+            this.perPage = perPage;
+            this.page = page;
+            if (!missingChannelIds.isEmpty()) {
+                // a response that is partial anyway does not wait for deeper pages either
+                this.mergeDeadline = start;
+            } else {
+                this.mergeDeadline = deadlineNanos > 0 ? start + deadlineNanos : null;
+            }
+        }
+
+        @NotNull
+        synchronized MergedPage getMergedPage() {
+            if (mergedPage == null) {
+                try (RequestTimings.Stage ignored = RequestTimings.stage("merge")) {
+                    mergedPage = merge(playlists, channelIds, perPage, page, mergeDeadline);
+                }
+            }
+            return mergedPage;
+        }
+
+        synchronized boolean isComplete() {
+            return mergedPage != null && mergedPage.incompleteChannelIds.isEmpty();
+        }
+
+        // empty unless this page was merged rather than served from the page cache
+        @NotNull
+        synchronized List<String> getIncompleteChannelIds() {
+            return mergedPage != null ? mergedPage.incompleteChannelIds : List.of();
         }
     }
 
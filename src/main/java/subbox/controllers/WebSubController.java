@@ -0,0 +1,43 @@
+package subbox.controllers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import subbox.services.RefreshingVideoCache;
+import subbox.services.WebSubSubscriber;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+
+@RestController
+@RequestMapping("/websub/callback")
+public class WebSubController {
+
+    @Autowired
+    private WebSubSubscriber webSubSubscriber;
+    @Autowired
+    private RefreshingVideoCache videoCache;
+
+    @NotNull
+    @GetMapping
+    public ResponseEntity<String> verify(@RequestParam("hub.mode") @NotNull String mode,
+                                         @RequestParam("hub.topic") @NotNull String topic,
+                                         @RequestParam("hub.challenge") @NotNull String challenge,
+                                         @RequestParam(name = "hub.lease_seconds", required = false) @Nullable Long leaseSeconds) {
+        if (!webSubSubscriber.verifyIntent(mode, topic, leaseSeconds)) {
+            return ResponseEntity.status(NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(challenge);
+    }
+
+    @PostMapping
+    public ResponseEntity<Void> receive(@RequestBody @NotNull String body,
+                                       @RequestHeader(name = "X-Hub-Signature", required = false) @Nullable String signature) {
+        for (String playlistId : webSubSubscriber.parseNotification(body, signature)) {
+            videoCache.refreshNow(playlistId);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+}
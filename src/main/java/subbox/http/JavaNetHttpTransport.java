@@ -0,0 +1,228 @@
+package subbox.http;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class JavaNetHttpTransport extends HttpTransport {
+
+    @NotNull
+    private static final Set<String> RESTRICTED_HEADERS = Set.of(
+            "connection", "content-length", "date", "expect", "from", "host",
+            "origin", "referer", "upgrade", "via", "warning");
+
+    @NotNull
+    private final HttpClient client;
+    @NotNull
+    private final Semaphore permits;
+
+    public JavaNetHttpTransport(@NotNull Duration connectTimeout, int maxConcurrentRequests) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    @NotNull
+    public HttpClient getClient() {
+        return client;
+    }
+
+    @Override
+    public boolean supportsMethod(@NotNull String method) {
+        return true;
+    }
+
+    @NotNull
+    @Override
+    protected LowLevelHttpRequest buildRequest(@NotNull String method, @NotNull String url) {
+        return new Request(method, url);
+    }
+
+    private class Request extends LowLevelHttpRequest {
+        @NotNull
+        private final HttpRequest.Builder builder;
+        @NotNull
+        private final String method;
+        private int readTimeout;
+
+        Request(@NotNull String method, @NotNull String url) {
+            this.builder = HttpRequest.newBuilder(URI.create(url));
+            this.method = method;
+        }
+
+        @Override
+        public void addHeader(@NotNull String name, @NotNull String value) {
+            if (!RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                builder.header(name, value);
+            }
+        }
+
+        @Override
+        public void setTimeout(int connectTimeout, int readTimeout) {
+            this.readTimeout = readTimeout;
+            if (readTimeout > 0) {
+                builder.timeout(Duration.ofMillis(readTimeout));
+            }
+        }
+
+        @NotNull
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+            builder.method(method, bodyPublisher());
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to execute " + method + " request");
+            }
+
+            // the permit covers the body transfer and is returned when the body is closed or the response disconnected
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    permits.release();
+                }
+            };
+            try {
+                return new Response(client.send(builder.build(), info -> new TimedBodySubscriber(readTimeout, release)), release);
+            } catch (IOException | RuntimeException e) {
+                release.run();
+                throw e;
+            } catch (InterruptedException e) {
+                release.run();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while executing " + method + " request");
+            }
+        }
+
+        @NotNull
+        private HttpRequest.BodyPublisher bodyPublisher() throws IOException {
+            if (getStreamingContent() == null) {
+                return HttpRequest.BodyPublishers.noBody();
+            }
+
+            if (getContentType() != null) {
+                builder.header("Content-Type", getContentType());
+            }
+            if (getContentEncoding() != null) {
+                builder.header("Content-Encoding", getContentEncoding());
+            }
+
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            getStreamingContent().writeTo(content);
+            return HttpRequest.BodyPublishers.ofByteArray(content.toByteArray());
+        }
+    }
+
+    private static class Response extends LowLevelHttpResponse {
+        @NotNull
+        private final HttpResponse<InputStream> response;
+        @NotNull
+        private final List<String> headerNames = new ArrayList<>();
+        @NotNull
+        private final List<String> headerValues = new ArrayList<>();
+        @NotNull
+        private final Runnable release;
+
+        Response(@NotNull HttpResponse<InputStream> response, @NotNull Runnable release) {
+            this.response = response;
+            this.release = release;
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                for (String value : header.getValue()) {
+                    headerNames.add(header.getKey());
+                    headerValues.add(value);
+                }
+            }
+        }
+
+        @NotNull
+        @Override
+        public InputStream getContent() {
+            return response.body();
+        }
+
+        @Nullable
+        @Override
+        public String getContentEncoding() {
+            return response.headers().firstValue("Content-Encoding").orElse(null);
+        }
+
+        @Override
+        public long getContentLength() {
+            return response.headers().firstValueAsLong("Content-Length").orElse(-1);
+        }
+
+        @Nullable
+        @Override
+        public String getContentType() {
+            return response.headers().firstValue("Content-Type").orElse(null);
+        }
+
+        @NotNull
+        @Override
+        public String getStatusLine() {
+            String version = response.version() == HttpClient.Version.HTTP_2 ? "HTTP/2" : "HTTP/1.1";
+            return version + " " + response.statusCode();
+        }
+
+        @Override
+        public int getStatusCode() {
+            return response.statusCode();
+        }
+
+        @Nullable
+        @Override
+        public String getReasonPhrase() {
+            return null;
+        }
+
+        @Override
+        public int getHeaderCount() {
+            return headerNames.size();
+        }
+
+        @NotNull
+        @Override
+        public String getHeaderName(int index) {
+            return headerNames.get(index);
+        }
+
+        @NotNull
+        @Override
+        public String getHeaderValue(int index) {
+            return headerValues.get(index);
+        }
+
+        @Override
+        public void disconnect() throws IOException {
+            try {
+                response.body().close();
+            } finally {
+                release.run();
+            }
+        }
+    }
+
+}
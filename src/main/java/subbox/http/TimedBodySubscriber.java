@@ -0,0 +1,178 @@
+package subbox.http;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+final class TimedBodySubscriber extends InputStream implements HttpResponse.BodySubscriber<InputStream> {
+
+    @NotNull
+    private static final Object END = new Object();
+
+    @NotNull
+    private final BlockingQueue<Object> items = new LinkedBlockingQueue<>();
+    @NotNull
+    private final CompletableFuture<InputStream> body = CompletableFuture.completedFuture(this);
+    private final long readTimeoutMillis;
+    @NotNull
+    private final Runnable onFinished;
+
+    @Nullable
+    private volatile Flow.Subscription subscription;
+    @NotNull
+    private Iterator<ByteBuffer> buffers = Collections.emptyIterator();
+    @Nullable
+    private ByteBuffer current;
+    private boolean requestNext;
+    private boolean ended;
+    private boolean closed;
+    private boolean finished;
+
+    TimedBodySubscriber(long readTimeoutMillis, @NotNull Runnable onFinished) {
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.onFinished = onFinished;
+    }
+
+    @NotNull
+    @Override
+    public CompletionStage<InputStream> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(@NotNull Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(@NotNull List<ByteBuffer> item) {
+        items.add(item);
+    }
+
+    @Override
+    public void onError(@NotNull Throwable throwable) {
+        items.add(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        items.add(END);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        return current.get() & 0xff;
+    }
+
+    @Override
+    public int read(@NotNull byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!ensureCurrent()) {
+            return -1;
+        }
+        int read = Math.min(length, current.remaining());
+        current.get(bytes, offset, read);
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return current == null ? 0 : current.remaining();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        Flow.Subscription subscription = this.subscription;
+        if (subscription != null && !ended) {
+            subscription.cancel();
+        }
+        finish();
+    }
+
+    private void finish() {
+        if (!finished) {
+            finished = true;
+            onFinished.run();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean ensureCurrent() throws IOException {
+        if (closed) {
+            throw new IOException("Response body is closed");
+        }
+        while (current == null || !current.hasRemaining()) {
+            if (buffers.hasNext()) {
+                current = buffers.next();
+                continue;
+            }
+            if (ended) {
+                return false;
+            }
+
+            Object item = poll();
+            if (item == END) {
+                ended = true;
+                finish();
+            } else if (item instanceof Throwable) {
+                ended = true;
+                finish();
+                throw new IOException("Reading response body failed", (Throwable) item);
+            } else {
+                buffers = ((List<ByteBuffer>) item).iterator();
+                requestNext = true;
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private Object poll() throws IOException {
+        Flow.Subscription subscription = this.subscription;
+        if (requestNext && subscription != null) {
+            requestNext = false;
+            subscription.request(1);
+        }
+
+        try {
+            Object item = readTimeoutMillis > 0
+                    ? items.poll(readTimeoutMillis, TimeUnit.MILLISECONDS)
+                    : items.take();
+            if (item == null) {
+                close();
+                throw new SocketTimeoutException("Read timed out after " + readTimeoutMillis + " ms");
+            }
+            return item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while reading response body");
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package subbox.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+@JsonSerialize(using = CachedVideoSerializer.class)
+public final class CachedVideo {
+
+    @NotNull
+    private final String id;
+    @NotNull
+    private final String channelId;
+    private final long publishedAt;
+    @NotNull
+    private final String title;
+    @Nullable
+    private final String thumbnailUrl;
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+
+    public CachedVideo(@NotNull String id,
+                       @NotNull String channelId,
+                       long publishedAt,
+                       @NotNull String title,
+                       @Nullable String thumbnailUrl,
+                       int thumbnailWidth,
+                       int thumbnailHeight) {
+        this.id = id;
+        this.channelId = channelId;
+        this.publishedAt = publishedAt;
+        this.title = title;
+        this.thumbnailUrl = thumbnailUrl;
+        this.thumbnailWidth = thumbnailWidth;
+        this.thumbnailHeight = thumbnailHeight;
+    }
+
+    @NotNull
+    public String getId() {
+        return id;
+    }
+
+    @NotNull
+    public String getChannelId() {
+        return channelId;
+    }
+
+    public long getPublishedAt() {
+        return publishedAt;
+    }
+
+    @NotNull
+    public String getTitle() {
+        return title;
+    }
+
+    @Nullable
+    public String getThumbnailUrl() {
+        return thumbnailUrl;
+    }
+
+    public int getThumbnailWidth() {
+        return thumbnailWidth;
+    }
+
+    public int getThumbnailHeight() {
+        return thumbnailHeight;
+    }
+
+}
@@ -0,0 +1,93 @@
+package subbox.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+public class CachedVideoSerializer extends StdSerializer<CachedVideo> {
+
+    @NotNull
+    private static final SerializableString ID = new SerializedString("id");
+    @NotNull
+    private static final SerializableString SNIPPET = new SerializedString("snippet");
+    @NotNull
+    private static final SerializableString CHANNEL_ID = new SerializedString("channelId");
+    @NotNull
+    private static final SerializableString PUBLISHED_AT = new SerializedString("publishedAt");
+    @NotNull
+    private static final SerializableString VALUE = new SerializedString("value");
+    @NotNull
+    private static final SerializableString DATE_ONLY = new SerializedString("dateOnly");
+    @NotNull
+    private static final SerializableString TIME_ZONE_SHIFT = new SerializedString("timeZoneShift");
+    @NotNull
+    private static final SerializableString THUMBNAILS = new SerializedString("thumbnails");
+    @NotNull
+    private static final SerializableString DEFAULT = new SerializedString("default");
+    @NotNull
+    private static final SerializableString HEIGHT = new SerializedString("height");
+    @NotNull
+    private static final SerializableString URL = new SerializedString("url");
+    @NotNull
+    private static final SerializableString WIDTH = new SerializedString("width");
+    @NotNull
+    private static final SerializableString TITLE = new SerializedString("title");
+
+    public CachedVideoSerializer() {
+        super(CachedVideo.class);
+    }
+
+    @Override
+    public void serialize(@NotNull CachedVideo video,
+                          @NotNull JsonGenerator gen,
+                          @NotNull SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(ID);
+        gen.writeString(video.getId());
+        gen.writeFieldName(SNIPPET);
+        gen.writeStartObject();
+        gen.writeFieldName(CHANNEL_ID);
+        gen.writeString(video.getChannelId());
+
+        // same shape the Google model's DateTime used to be serialized in
+        gen.writeFieldName(PUBLISHED_AT);
+        gen.writeStartObject();
+        gen.writeFieldName(VALUE);
+        gen.writeNumber(video.getPublishedAt());
+        gen.writeFieldName(DATE_ONLY);
+        gen.writeBoolean(false);
+        gen.writeFieldName(TIME_ZONE_SHIFT);
+        gen.writeNumber(0);
+        gen.writeEndObject();
+
+        if (video.getThumbnailUrl() != null) {
+            gen.writeFieldName(THUMBNAILS);
+            gen.writeStartObject();
+            gen.writeFieldName(DEFAULT);
+            gen.writeStartObject();
+            if (video.getThumbnailHeight() > 0) {
+                gen.writeFieldName(HEIGHT);
+                gen.writeNumber(video.getThumbnailHeight());
+            }
+            gen.writeFieldName(URL);
+            gen.writeString(video.getThumbnailUrl());
+            if (video.getThumbnailWidth() > 0) {
+                gen.writeFieldName(WIDTH);
+                gen.writeNumber(video.getThumbnailWidth());
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+
+        gen.writeFieldName(TITLE);
+        gen.writeString(video.getTitle());
+        gen.writeEndObject();
+        gen.writeEndObject();
+    }
+
+}
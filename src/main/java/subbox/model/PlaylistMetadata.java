@@ -12,6 +12,10 @@ public class PlaylistMetadata {
     @NotNull
     private String eTag;
 
+    public PlaylistMetadata() {
+        this("");
+    }
+
     public PlaylistMetadata(@NotNull String eTag) {
         this.eTag = eTag;
     }
@@ -34,4 +38,8 @@ public class PlaylistMetadata {
         this.eTag = eTag;
     }
 
+    public void invalidateETag() {
+        this.eTag = "";
+    }
+
 }
@@ -0,0 +1,30 @@
+package subbox.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+public class PlaylistPage {
+
+    @NotNull
+    private final List<CachedVideo> videos;
+    @Nullable
+    private final String nextPageToken;
+
+    public PlaylistPage(@NotNull List<CachedVideo> videos, @Nullable String nextPageToken) {
+        this.videos = videos;
+        this.nextPageToken = nextPageToken;
+    }
+
+    @NotNull
+    public List<CachedVideo> getVideos() {
+        return videos;
+    }
+
+    @Nullable
+    public String getNextPageToken() {
+        return nextPageToken;
+    }
+
+}
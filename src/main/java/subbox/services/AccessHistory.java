@@ -0,0 +1,159 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Map.Entry.comparingByValue;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+@Service
+public class AccessHistory {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(AccessHistory.class);
+
+    private static Path historyFile;
+    private static Duration savePeriod;
+    private static Duration halfLife;
+    private static int historySize;
+
+    @NotNull
+    private final ConcurrentHashMap<String, LongAdder> recentAccesses = new ConcurrentHashMap<>();
+    @NotNull
+    private Map<String, Double> weights = new HashMap<>();
+
+    private ScheduledExecutorService saveExecutor;
+
+    @Value("${subbox.warmup.history-file}")
+    public void setHistoryFile(@NotNull String historyFile) {
+        AccessHistory.historyFile = Paths.get(historyFile);
+    }
+
+    @Value("${subbox.warmup.save-period}")
+    public void setSavePeriod(@NotNull Duration savePeriod) {
+        AccessHistory.savePeriod = savePeriod;
+    }
+
+    @Value("${subbox.warmup.half-life}")
+    public void setHalfLife(@NotNull Duration halfLife) {
+        AccessHistory.halfLife = halfLife;
+    }
+
+    @Value("${subbox.warmup.history-size}")
+    public void setHistorySize(int historySize) {
+        AccessHistory.historySize = historySize;
+    }
+
+    @PostConstruct
+    public void init() {
+        load();
+
+        log.info("Initializing access history save task");
+        saveExecutor = Executors.newSingleThreadScheduledExecutor();
+        saveExecutor.scheduleAtFixedRate(this::save, savePeriod.toNanos(), savePeriod.toNanos(), NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        log.info("Cancelling access history save task");
+        saveExecutor.shutdown();
+        save();
+    }
+
+    public void record(@NotNull List<String> channelIds) {
+        for (String channelId : channelIds) {
+            recentAccesses.computeIfAbsent(channelId, id -> new LongAdder()).increment();
+        }
+    }
+
+    @NotNull
+    public synchronized List<String> getHottest(int limit) {
+        return weights.entrySet()
+                .stream()
+                .sorted(comparingByValue((Double w1, Double w2) -> Double.compare(w2, w1)))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .collect(toList());
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(historyFile)) {
+            log.info("No access history found at {}", historyFile);
+            return;
+        }
+
+        Map<String, Double> loadedWeights = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(historyFile)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf('\t');
+                if (separator < 0) {
+                    continue;
+                }
+                loadedWeights.put(line.substring(separator + 1), Double.parseDouble(line.substring(0, separator)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            log.warn("Could not read access history from {}", historyFile, e);
+            return;
+        }
+
+        weights = loadedWeights;
+        log.info("Loaded access history of {} channels from {}", weights.size(), historyFile);
+    }
+
+    private synchronized void save() {
+        double decay = Math.pow(0.5, (double) savePeriod.toNanos() / halfLife.toNanos());
+        Map<String, Double> decayedWeights = new HashMap<>();
+        weights.forEach((channelId, weight) -> decayedWeights.put(channelId, weight * decay));
+        for (String channelId : recentAccesses.keySet()) {
+            LongAdder accesses = recentAccesses.remove(channelId);
+            if (accesses != null) {
+                decayedWeights.merge(channelId, (double) accesses.sum(), Double::sum);
+            }
+        }
+
+        weights = new HashMap<>();
+        decayedWeights.entrySet()
+                .stream()
+                .sorted(comparingByValue((Double w1, Double w2) -> Double.compare(w2, w1)))
+                .limit(historySize)
+                .forEach(entry -> weights.put(entry.getKey(), entry.getValue()));
+
+        try {
+            Path tempFile = Files.createTempFile(historyFile.toAbsolutePath().getParent(), "access-history", ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+                for (Map.Entry<String, Double> entry : weights.entrySet()) {
+                    writer.write(entry.getValue() + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, historyFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Saved access history of {} channels to {}", weights.size(), historyFile);
+        } catch (IOException e) {
+            log.warn("Could not save access history to {}", historyFile, e);
+        }
+    }
+
+}
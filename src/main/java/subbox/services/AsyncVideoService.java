@@ -1,7 +1,7 @@
 package subbox.services;
 
-import com.google.api.services.youtube.model.Video;
 import org.jetbrains.annotations.NotNull;
+import subbox.util.CompositeFuture;
 
 import java.util.List;
 import java.util.concurrent.Future;
@@ -9,6 +9,12 @@ import java.util.concurrent.Future;
 public interface AsyncVideoService {
 
     @NotNull
-    Future<List<List<Video>>> getUploadedVideos(@NotNull List<String> channelIds);
+    CompositeFuture<String, CachedPlaylist> getUploadedVideos(@NotNull List<String> channelIds);
+
+    @NotNull
+    Future<List<CachedPlaylist>> warmUp(@NotNull List<String> channelIds);
+
+    @NotNull
+    Future<?> loadNextPage(@NotNull CachedPlaylist playlist);
 
 }
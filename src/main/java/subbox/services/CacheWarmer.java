@@ -0,0 +1,123 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import subbox.util.DurationFormatter;
+import subbox.util.MoreExecutors;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class CacheWarmer {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final int CHUNK_SIZE = 50;
+    // a channels.list call per chunk, and per uploads playlist a page of items plus at most one videos.list call
+    private static final int UNITS_PER_CHUNK = 1;
+    private static final int UNITS_PER_PLAYLIST = 2;
+
+    private static long quotaBudget;
+    private static int concurrency;
+    private static double readyFraction;
+
+    @Autowired
+    private AccessHistory accessHistory;
+    @Autowired
+    private AsyncVideoService videoService;
+
+    @NotNull
+    private final AtomicInteger warmedChannels = new AtomicInteger();
+    @NotNull
+    private final AtomicInteger remainingChunks = new AtomicInteger();
+    private volatile int targetChannels;
+    private volatile boolean started;
+
+    @Value("${subbox.warmup.quota-budget}")
+    public void setQuotaBudget(long quotaBudget) {
+        CacheWarmer.quotaBudget = quotaBudget;
+    }
+
+    @Value("${subbox.warmup.concurrency}")
+    public void setConcurrency(int concurrency) {
+        CacheWarmer.concurrency = concurrency;
+    }
+
+    @Value("${subbox.warmup.ready-fraction}")
+    public void setReadyFraction(double readyFraction) {
+        CacheWarmer.readyFraction = readyFraction;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        List<String> channelIds = accessHistory.getHottest(channelsWithinBudget(quotaBudget));
+        targetChannels = channelIds.size();
+        if (channelIds.isEmpty()) {
+            log.info("Nothing to pre-warm");
+            started = true;
+            return;
+        }
+
+        log.info("Pre-warming cache with {} most requested channels within {} API units", channelIds.size(), quotaBudget);
+        ZonedDateTime start = ZonedDateTime.now();
+        ExecutorService warmUpExecutor = MoreExecutors.newBoundedCachedThreadPool(concurrency);
+        for (int i = 0; i < channelIds.size(); i += CHUNK_SIZE) {
+            List<String> chunk = channelIds.subList(i, Math.min(i + CHUNK_SIZE, channelIds.size()));
+            remainingChunks.incrementAndGet();
+            warmUpExecutor.execute(() -> warmUpChunk(chunk, start));
+        }
+        warmUpExecutor.shutdown();
+        started = true;
+    }
+
+    private void warmUpChunk(@NotNull List<String> channelIds, @NotNull ZonedDateTime start) {
+        try {
+            videoService.warmUp(channelIds).get();
+            warmedChannels.addAndGet(channelIds.size());
+        } catch (ExecutionException | RuntimeException e) {
+            log.warn("Could not pre-warm {} channels", channelIds.size(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (remainingChunks.decrementAndGet() == 0) {
+                log.info("Pre-warmed {} of {} channels in {}", warmedChannels.get(), targetChannels,
+                        DurationFormatter.format(Duration.between(start, ZonedDateTime.now())));
+            }
+        }
+    }
+
+    // assumes the initial videos of a playlist fit in a single page
+    static int channelsWithinBudget(long quotaBudget) {
+        long unitsPerChunk = UNITS_PER_CHUNK + CHUNK_SIZE * UNITS_PER_PLAYLIST;
+        long chunks = quotaBudget / unitsPerChunk;
+        long remainingUnits = quotaBudget % unitsPerChunk;
+        long channels = chunks * CHUNK_SIZE
+                + (remainingUnits > UNITS_PER_CHUNK ? (remainingUnits - UNITS_PER_CHUNK) / UNITS_PER_PLAYLIST : 0);
+        return (int) Math.min(channels, Integer.MAX_VALUE);
+    }
+
+    public boolean isReady() {
+        return started && (remainingChunks.get() == 0 || warmedChannels.get() >= readyFraction * targetChannels);
+    }
+
+    public int getWarmedChannels() {
+        return warmedChannels.get();
+    }
+
+    public int getTargetChannels() {
+        return targetChannels;
+    }
+
+}
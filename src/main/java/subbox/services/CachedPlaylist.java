@@ -0,0 +1,443 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.util.ParallelMerge;
+import subbox.util.SortKeyIterator;
+
+import java.util.HashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class CachedPlaylist implements Iterable<CachedVideo> {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(CachedPlaylist.class);
+    @NotNull
+    private static final AtomicLong versions = new AtomicLong();
+
+    @FunctionalInterface
+    interface PageLoader {
+        @NotNull
+        PlaylistPage load(@NotNull String playlistId, @Nullable String pageToken, long maxVideos);
+    }
+
+    @NotNull
+    private final String playlistId;
+    @NotNull
+    private final PageLoader loader;
+    @NotNull
+    private final VideoStorage storage;
+    private final int pageSize;
+    private final int maxDepth;
+    private final long loadNanos;
+    private final long loadedAt = System.nanoTime();
+    @NotNull
+    private final AtomicInteger readDepth = new AtomicInteger();
+
+    private volatile long version = versions.incrementAndGet();
+    @NotNull
+    private volatile VideoList videos;
+    @Nullable
+    private volatile String nextPageToken;
+    private volatile boolean stale;
+    private boolean released;
+    @Nullable
+    private CompletableFuture<Void> pendingLoad;
+
+    CachedPlaylist(@NotNull String playlistId,
+                   @NotNull PageLoader loader,
+                   @NotNull VideoStorage storage,
+                   int pageSize,
+                   int maxDepth,
+                   @NotNull PlaylistPage firstPage,
+                   long loadNanos) {
+        this.playlistId = playlistId;
+        this.loader = loader;
+        this.storage = storage;
+        this.pageSize = pageSize;
+        this.maxDepth = maxDepth;
+        this.videos = storage.store(firstPage.getVideos());
+        this.nextPageToken = firstPage.getNextPageToken();
+        this.loadNanos = loadNanos;
+    }
+
+    @NotNull
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    long getLoadStartedAt() {
+        return loadedAt - loadNanos;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    int getReadDepth() {
+        return readDepth.get();
+    }
+
+    public boolean isStale() {
+        return stale;
+    }
+
+    void markStale() {
+        stale = true;
+    }
+
+    @NotNull
+    synchronized PlaylistPage toPage() {
+        return new PlaylistPage(videos.toList(), nextPageToken);
+    }
+
+    synchronized void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        // requests that got this playlist before it was replaced may still read it, so the videos move to the heap
+        VideoList owned = videos;
+        if (storage != HeapVideoStorage.INSTANCE) {
+            videos = HeapVideoStorage.INSTANCE.store(owned.toList());
+        }
+        owned.release();
+    }
+
+    // iterators and snapshots hold a reference to their list until they are closed
+    @NotNull
+    @Override
+    public LazyIterator iterator() {
+        return new LazyIterator(acquire(), null, 0);
+    }
+
+    // waits for deeper pages only until the deadline, after which they are left loading through pageLoader
+    @NotNull
+    public LazyIterator iterator(@NotNull Function<CachedPlaylist, Future<?>> pageLoader, long deadline) {
+        return new LazyIterator(acquire(), pageLoader, deadline);
+    }
+
+    @NotNull
+    public Snapshot snapshot() {
+        // Read the token before the videos so a finished load is never paired with a shorter list
+        boolean complete = nextPageToken == null;
+        VideoList snapshot = acquire();
+        return new Snapshot(snapshot, complete || snapshot.size() >= maxDepth);
+    }
+
+    @NotNull
+    private synchronized VideoList acquire() {
+        videos.retain();
+        return videos;
+    }
+
+    // the returned list carries a reference for the caller, even when it is the one passed in
+    @NotNull
+    private VideoList loadMore(@NotNull VideoList loaded) {
+        while (true) {
+            CompletableFuture<Void> load;
+            String pageToken = null;
+            int maxVideos = 0;
+            synchronized (this) {
+                // another iterator may have loaded more since this one read the list
+                if (videos != loaded || nextPageToken == null || videos.size() >= maxDepth) {
+                    return acquire();
+                }
+                load = pendingLoad;
+                if (load == null) {
+                    load = pendingLoad = new CompletableFuture<>();
+                    pageToken = nextPageToken;
+                    maxVideos = Math.min(pageSize, maxDepth - videos.size());
+                }
+            }
+
+            // otherwise the page is being loaded by another reader
+            if (pageToken != null) {
+                loadPage(load, pageToken, maxVideos);
+            }
+            try {
+                load.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+    }
+
+    // like loadMore, but the page is loaded by pageLoader and only waited for until the deadline
+    @NotNull
+    private VideoList awaitMore(@NotNull VideoList loaded, @NotNull Function<CachedPlaylist, Future<?>> pageLoader, long deadline) {
+        synchronized (this) {
+            if (videos != loaded || nextPageToken == null || videos.size() >= maxDepth) {
+                return acquire();
+            }
+        }
+
+        Future<?> load = pageLoader.apply(this);
+        try {
+            load.get(Math.max(0, deadline - System.nanoTime()), NANOSECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // the page keeps loading in the background, and a failed load is started again by the next reader
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return acquire();
+    }
+
+    @NotNull
+    CompletableFuture<Void> loadNextPage(@NotNull Executor executor) {
+        CompletableFuture<Void> load;
+        String pageToken;
+        int maxVideos;
+        synchronized (this) {
+            if (pendingLoad != null) {
+                return pendingLoad;
+            }
+            if (nextPageToken == null || videos.size() >= maxDepth) {
+                return CompletableFuture.completedFuture(null);
+            }
+            load = pendingLoad = new CompletableFuture<>();
+            pageToken = nextPageToken;
+            maxVideos = Math.min(pageSize, maxDepth - videos.size());
+        }
+
+        load.exceptionally(e -> {
+            log.warn("Failed to load the next page of playlist \"{}\"", playlistId, e);
+            return null;
+        });
+        try {
+            executor.execute(() -> loadPage(load, pageToken, maxVideos));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                pendingLoad = null;
+            }
+            load.completeExceptionally(e);
+        }
+        return load;
+    }
+
+    // the page is loaded without holding the lock, so toPage() and release() do not wait for it
+    private void loadPage(@NotNull CompletableFuture<Void> load, @NotNull String pageToken, int maxVideos) {
+        try {
+            PlaylistPage page = loader.load(playlistId, pageToken, maxVideos);
+            synchronized (this) {
+                VideoStorage targetStorage = released ? HeapVideoStorage.INSTANCE : storage;
+                VideoList prefix = videos;
+                prefix.retain();
+                try {
+                    videos = targetStorage.merge(prefix, page.getVideos());
+                    // pages rendered from the old list are out of date once a video lands inside it
+                    if (firstMergedIndex(prefix, videos) < prefix.size()) {
+                        version = versions.incrementAndGet();
+                    }
+                } finally {
+                    prefix.release();
+                }
+                nextPageToken = page.getNextPageToken();
+                pendingLoad = null;
+            }
+            load.complete(null);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                pendingLoad = null;
+            }
+            load.completeExceptionally(e);
+        }
+    }
+
+    // whether the list is missing videos that are loaded or can still be loaded
+    private synchronized boolean hasMoreThan(@NotNull VideoList list) {
+        return videos != list || (nextPageToken != null && list.size() < maxDepth);
+    }
+
+    public final class Snapshot implements ParallelMerge.SortedRun<CachedVideo>, AutoCloseable {
+        @NotNull
+        private final VideoList videos;
+        private final boolean complete;
+        private boolean closed;
+
+        Snapshot(@NotNull VideoList videos, boolean complete) {
+            this.videos = videos;
+            this.complete = complete;
+        }
+
+        @Override
+        public int size() {
+            return videos.size();
+        }
+
+        @Override
+        public long sortKey(int index) {
+            return -videos.getPublishedAt(index);
+        }
+
+        @NotNull
+        @Override
+        public CachedVideo get(int index) {
+            return videos.get(index);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return complete;
+        }
+
+        @Override
+        public void markConsumed(int count) {
+            if (count > readDepth.get()) {
+                readDepth.accumulateAndGet(count, Math::max);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                videos.release();
+            }
+        }
+    }
+
+    public final class LazyIterator implements SortKeyIterator<CachedVideo>, AutoCloseable {
+        @NotNull
+        private VideoList list;
+        @Nullable
+        private final Function<CachedPlaylist, Future<?>> pageLoader;
+        private final long deadline;
+        private int index;
+        private boolean closed;
+        private boolean truncated;
+        // videos of an earlier list that were returned but now follow newly merged ones
+        @Nullable
+        private Set<String> returnedIds;
+
+        LazyIterator(@NotNull VideoList list, @Nullable Function<CachedPlaylist, Future<?>> pageLoader, long deadline) {
+            this.list = list;
+            this.pageLoader = pageLoader;
+            this.deadline = deadline;
+        }
+
+        // whether the iterator ended at the deadline rather than at the end of the playlist
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public boolean hasNext() {
+            skipReturned();
+            while (index >= list.size()) {
+                if (truncated) {
+                    return false;
+                }
+
+                VideoList loaded = pageLoader != null ? awaitMore(list, pageLoader, deadline) : loadMore(list);
+                if (loaded == list) {
+                    loaded.release();
+                    truncated = pageLoader != null && hasMoreThan(list);
+                    return false;
+                }
+
+                // Every video of the old list has been returned. Loaded videos newer than the last one were merged
+                // in before it, so the iterator goes back to the first of them rather than skipping them, and
+                // passes over the old videos that follow.
+                index = firstMergedIndex(list, loaded);
+                for (int i = index; i < list.size(); i++) {
+                    if (returnedIds == null) {
+                        returnedIds = new HashSet<>();
+                    }
+                    returnedIds.add(list.get(i).getId());
+                }
+                list.release();
+                list = loaded;
+                skipReturned();
+            }
+            return true;
+        }
+
+        private void skipReturned() {
+            while (returnedIds != null && index < list.size() && returnedIds.remove(list.get(index).getId())) {
+                advance();
+                if (returnedIds.isEmpty()) {
+                    returnedIds = null;
+                }
+            }
+        }
+
+        @Override
+        public CachedVideo next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return list.get(advance());
+        }
+
+        @Override
+        public long peekSortKey() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return -list.getPublishedAt(index);
+        }
+
+        @Override
+        public void skip() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            advance();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                list.release();
+            }
+        }
+
+        private int advance() {
+            int current = index++;
+            if (index > readDepth.get()) {
+                readDepth.accumulateAndGet(index, Math::max);
+            }
+            return current;
+        }
+    }
+
+    // merged videos only go before old ones that are strictly older, so the first merged one is where the keys differ
+    private static int firstMergedIndex(@NotNull VideoList prefix, @NotNull VideoList merged) {
+        int index = 0;
+        while (index < prefix.size() && prefix.getPublishedAt(index) == merged.getPublishedAt(index)) {
+            index++;
+        }
+        return index;
+    }
+
+}
@@ -5,10 +5,11 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.api.services.youtube.model.Channel;
 import com.google.api.services.youtube.model.ChannelContentDetails;
-import com.google.api.services.youtube.model.Video;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import subbox.util.CompositeFuture;
+import subbox.util.RequestTimings;
 
 import java.util.*;
 import java.util.concurrent.Future;
@@ -34,17 +35,51 @@ public class CachingAsyncVideoService implements AsyncVideoService {
 
     @NotNull
     @Override
-    public Future<List<List<Video>>> getUploadedVideos(@NotNull List<String> channelIds) {
-        Map<String, Optional<Channel>> channels = channelCache.getAll(channelIds);
+    public CompositeFuture<String, CachedPlaylist> getUploadedVideos(@NotNull List<String> channelIds) {
+        if (RequestTimings.isSampled()) {
+            RequestTimings.record("channelHits", channelCache.getAllPresent(channelIds).size());
+        }
+        Map<String, Optional<Channel>> channels;
+        try (RequestTimings.Stage ignored = RequestTimings.stage("channels")) {
+            channels = channelCache.getAll(channelIds);
+        }
         checkChannelsPresent(channels);
 
-        return videoCache.get(channels.values()
+        Map<String, String> channelIdsByPlaylist = uploadPlaylistChannelIds(channels);
+        return videoCache.get(new ArrayList<>(channelIdsByPlaylist.keySet()))
+                .mapKeys(channelIdsByPlaylist::get);
+    }
+
+    @NotNull
+    @Override
+    public Future<List<CachedPlaylist>> warmUp(@NotNull List<String> channelIds) {
+        return videoCache.get(uploadPlaylistIds(channelCache.getAll(channelIds)));
+    }
+
+    @NotNull
+    @Override
+    public Future<?> loadNextPage(@NotNull CachedPlaylist playlist) {
+        return videoCache.loadNextPage(playlist);
+    }
+
+    @NotNull
+    private List<String> uploadPlaylistIds(@NotNull Map<String, Optional<Channel>> channels) {
+        return channels.values()
                 .stream()
-                .map(Optional::get)
+                .flatMap(Optional::stream)
                 .map(Channel::getContentDetails)
                 .map(ChannelContentDetails::getRelatedPlaylists)
                 .map(ChannelContentDetails.RelatedPlaylists::getUploads)
-                .collect(toList()));
+                .collect(toList());
+    }
+
+    @NotNull
+    private Map<String, String> uploadPlaylistChannelIds(@NotNull Map<String, Optional<Channel>> channels) {
+        return channels.entrySet()
+                .stream()
+                .filter(entry -> entry.getValue().isPresent())
+                .collect(toMap(entry -> entry.getValue().get().getContentDetails().getRelatedPlaylists().getUploads(),
+                        Map.Entry::getKey, (first, second) -> first, LinkedHashMap::new));
     }
 
     private void checkChannelsPresent(Map<String, Optional<Channel>> channels) {
@@ -0,0 +1,181 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.util.SegmentStore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+final class DiskPlaylistTier {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(DiskPlaylistTier.class);
+
+    private static final int FORMAT_VERSION = 1;
+
+    static final class Demoted {
+        @NotNull
+        private final String eTag;
+        @NotNull
+        private final PlaylistPage page;
+
+        Demoted(@NotNull String eTag, @NotNull PlaylistPage page) {
+            this.eTag = eTag;
+            this.page = page;
+        }
+
+        @NotNull
+        String getETag() {
+            return eTag;
+        }
+
+        @NotNull
+        PlaylistPage getPage() {
+            return page;
+        }
+    }
+
+    @NotNull
+    private final SegmentStore store;
+    @NotNull
+    private final LongAdder demotions = new LongAdder();
+    @NotNull
+    private final LongAdder promotions = new LongAdder();
+    @NotNull
+    private final LongAdder failures = new LongAdder();
+
+    DiskPlaylistTier(@NotNull Path file, long maxBytes) throws IOException {
+        this.store = new SegmentStore(file, maxBytes);
+    }
+
+    boolean demote(@NotNull String playlistId, @NotNull String eTag, @NotNull PlaylistPage page) {
+        try {
+            if (store.put(playlistId, encode(eTag, page))) {
+                demotions.increment();
+                return true;
+            }
+            log.debug("Playlist \"{}\" is too large for the disk tier", playlistId);
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Demoting playlist \"{}\" to disk failed", playlistId, e);
+        }
+        return false;
+    }
+
+    @Nullable
+    Demoted promote(@NotNull String playlistId) {
+        try {
+            byte[] encoded = store.take(playlistId);
+            if (encoded == null) {
+                return null;
+            }
+            Demoted demoted = decode(encoded);
+            if (demoted != null) {
+                promotions.increment();
+            }
+            return demoted;
+        } catch (IOException e) {
+            failures.increment();
+            log.warn("Promoting playlist \"{}\" from disk failed", playlistId, e);
+            return null;
+        }
+    }
+
+    @NotNull
+    Map<String, ?> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(store.getStats());
+        stats.put("demotions", demotions.sum());
+        stats.put("promotions", promotions.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+
+    void close() {
+        try {
+            store.close();
+        } catch (IOException e) {
+            log.warn("Closing the disk tier failed", e);
+        }
+    }
+
+    @NotNull
+    private static byte[] encode(@NotNull String eTag, @NotNull PlaylistPage page) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes))) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(eTag);
+            writeNullableUTF(out, page.getNextPageToken());
+            out.writeInt(page.getVideos().size());
+            // uploads playlists belong to a single channel, so its ID is written once
+            String previousChannelId = null;
+            for (CachedVideo video : page.getVideos()) {
+                out.writeUTF(video.getId());
+                boolean sameChannel = video.getChannelId().equals(previousChannelId);
+                out.writeBoolean(sameChannel);
+                if (!sameChannel) {
+                    out.writeUTF(video.getChannelId());
+                    previousChannelId = video.getChannelId();
+                }
+                out.writeLong(video.getPublishedAt());
+                out.writeUTF(video.getTitle());
+                writeNullableUTF(out, video.getThumbnailUrl());
+                out.writeInt(video.getThumbnailWidth());
+                out.writeInt(video.getThumbnailHeight());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Nullable
+    private static Demoted decode(@NotNull byte[] encoded) throws IOException {
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(encoded)))) {
+            if (in.readByte() != FORMAT_VERSION) {
+                return null;
+            }
+            String eTag = in.readUTF();
+            String nextPageToken = readNullableUTF(in);
+            int count = in.readInt();
+            List<CachedVideo> videos = new ArrayList<>(count);
+            String channelId = null;
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                if (!in.readBoolean()) {
+                    channelId = in.readUTF();
+                }
+                videos.add(new CachedVideo(id, Objects.requireNonNull(channelId), in.readLong(), in.readUTF(),
+                        readNullableUTF(in), in.readInt(), in.readInt()));
+            }
+            return new Demoted(eTag, new PlaylistPage(videos, nextPageToken));
+        }
+    }
+
+    private static void writeNullableUTF(@NotNull DataOutputStream out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableUTF(@NotNull DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+}
@@ -0,0 +1,80 @@
+package subbox.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import subbox.model.CachedVideo;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+public enum FeedFormat {
+
+    JSON(MediaType.APPLICATION_JSON_UTF8, new JsonFactory()),
+    CBOR(new MediaType("application", "cbor"), new CBORFactory()),
+    SMILE(new MediaType("application", "x-jackson-smile"), new SmileFactory()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES));
+
+    @NotNull
+    private final MediaType mediaType;
+    @NotNull
+    private final ObjectWriter writer;
+
+    FeedFormat(@NotNull MediaType mediaType, @NotNull JsonFactory factory) {
+        this.mediaType = mediaType;
+        this.writer = new ObjectMapper(factory).writerFor(new TypeReference<List<CachedVideo>>() {
+        });
+    }
+
+    @NotNull
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    @NotNull
+    public byte[] write(@NotNull List<CachedVideo> videos) {
+        try {
+            return writer.writeValueAsBytes(videos);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @NotNull
+    public static FeedFormat negotiate(@Nullable String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return JSON;
+        }
+
+        MediaType.sortBySpecificityAndQuality(acceptedTypes);
+        for (MediaType acceptedType : acceptedTypes) {
+            if (acceptedType.getQualityValue() == 0) {
+                continue;
+            }
+            for (FeedFormat format : values()) {
+                if (acceptedType.includes(format.mediaType)) {
+                    return format;
+                }
+            }
+        }
+        return JSON;
+    }
+
+}
@@ -3,12 +3,15 @@ package subbox.services;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import subbox.util.ApiKeyPool;
+import subbox.util.CircuitBreaker;
 
 import javax.validation.ConstraintViolationException;
 import java.time.ZonedDateTime;
 import java.util.Map;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
 import static subbox.util.Maps.orderedMapOf;
 
 @RestControllerAdvice
@@ -25,4 +28,26 @@ public class GlobalExceptionHandler {
         );
     }
 
+    @ExceptionHandler
+    @ResponseStatus(SERVICE_UNAVAILABLE)
+    public Map<String, ?> handle(CircuitBreaker.OpenException exception) {
+        return orderedMapOf(
+                "timestamp", ZonedDateTime.now(),
+                "status", SERVICE_UNAVAILABLE.value(),
+                "error", SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "message", exception.getMessage()
+        );
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(SERVICE_UNAVAILABLE)
+    public Map<String, ?> handle(ApiKeyPool.ExhaustedException exception) {
+        return orderedMapOf(
+                "timestamp", ZonedDateTime.now(),
+                "status", SERVICE_UNAVAILABLE.value(),
+                "error", SERVICE_UNAVAILABLE.getReasonPhrase(),
+                "message", exception.getMessage()
+        );
+    }
+
 }
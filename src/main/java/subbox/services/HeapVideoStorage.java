@@ -0,0 +1,85 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import subbox.model.CachedVideo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+final class HeapVideoStorage implements VideoStorage {
+
+    @NotNull
+    static final HeapVideoStorage INSTANCE = new HeapVideoStorage();
+
+    private HeapVideoStorage() {
+    }
+
+    @NotNull
+    @Override
+    public VideoList store(@NotNull List<CachedVideo> videos) {
+        return new HeapVideoList(Collections.unmodifiableList(videos));
+    }
+
+    @NotNull
+    @Override
+    public VideoList merge(@NotNull VideoList prefix, @NotNull List<CachedVideo> videos) {
+        if (!(prefix instanceof HeapVideoList)) {
+            return VideoStorage.super.merge(prefix, videos);
+        }
+
+        List<CachedVideo> prefixVideos = ((HeapVideoList) prefix).videos;
+        return new HeapVideoList(Collections.unmodifiableList(VideoStorage.mergeSorted(prefixVideos, videos)));
+    }
+
+    @NotNull
+    @Override
+    public Map<String, ?> getStats() {
+        return Map.of("backend", "heap");
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static class HeapVideoList implements VideoList {
+        @NotNull
+        private final List<CachedVideo> videos;
+
+        HeapVideoList(@NotNull List<CachedVideo> videos) {
+            this.videos = videos;
+        }
+
+        @Override
+        public int size() {
+            return videos.size();
+        }
+
+        @Override
+        public long getPublishedAt(int index) {
+            return videos.get(index).getPublishedAt();
+        }
+
+        @NotNull
+        @Override
+        public CachedVideo get(int index) {
+            return videos.get(index);
+        }
+
+        @Override
+        public void retain() {
+        }
+
+        @Override
+        public void release() {
+        }
+
+        @NotNull
+        @Override
+        public List<CachedVideo> toList() {
+            return new ArrayList<>(videos);
+        }
+    }
+
+}
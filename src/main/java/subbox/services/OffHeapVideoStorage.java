@@ -0,0 +1,196 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import subbox.model.CachedVideo;
+import subbox.util.SlabAllocator;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+final class OffHeapVideoStorage implements VideoStorage {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(OffHeapVideoStorage.class);
+
+    @NotNull
+    private final SlabAllocator allocator;
+    @NotNull
+    private final LongAdder storedLists = new LongAdder();
+    @NotNull
+    private final LongAdder heapFallbacks = new LongAdder();
+
+    OffHeapVideoStorage(int slabSize, int maxSlabs) {
+        this.allocator = new SlabAllocator(slabSize, maxSlabs);
+    }
+
+    @NotNull
+    @Override
+    public VideoList store(@NotNull List<CachedVideo> videos) {
+        List<byte[][]> strings = new ArrayList<>(videos.size());
+        int size = Integer.BYTES + videos.size() * (Long.BYTES + Integer.BYTES);
+        for (CachedVideo video : videos) {
+            byte[][] encoded = {
+                    video.getId().getBytes(UTF_8),
+                    video.getChannelId().getBytes(UTF_8),
+                    video.getTitle().getBytes(UTF_8),
+                    video.getThumbnailUrl() == null ? null : video.getThumbnailUrl().getBytes(UTF_8)
+            };
+            strings.add(encoded);
+            size += 2 * Integer.BYTES;
+            for (byte[] string : encoded) {
+                size += Integer.BYTES + (string == null ? 0 : string.length);
+            }
+        }
+
+        long address = allocator.allocate(size);
+        if (address == SlabAllocator.NO_SPACE) {
+            log.debug("Off-heap storage is full, keeping {} videos on heap", videos.size());
+            heapFallbacks.increment();
+            return HeapVideoStorage.INSTANCE.store(videos);
+        }
+
+        ByteBuffer block = allocator.slice(address, size);
+        block.putInt(videos.size());
+        int keysOffset = block.position();
+        int offsetsOffset = keysOffset + videos.size() * Long.BYTES;
+        block.position(offsetsOffset + videos.size() * Integer.BYTES);
+        for (int i = 0; i < videos.size(); i++) {
+            CachedVideo video = videos.get(i);
+            block.putLong(keysOffset + i * Long.BYTES, video.getPublishedAt());
+            block.putInt(offsetsOffset + i * Integer.BYTES, block.position());
+            block.putInt(video.getThumbnailWidth());
+            block.putInt(video.getThumbnailHeight());
+            for (byte[] string : strings.get(i)) {
+                putString(block, string);
+            }
+        }
+
+        storedLists.increment();
+        return new OffHeapVideoList(address, size, block.clear());
+    }
+
+    @NotNull
+    @Override
+    public Map<String, ?> getStats() {
+        long capacity = allocator.getCapacityBytes();
+        long requested = allocator.getRequestedBytes();
+        long allocated = allocator.getAllocatedBytes();
+        long free = allocator.getFreeListBytes();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "off-heap");
+        stats.put("lists", storedLists.sum());
+        stats.put("heapFallbacks", heapFallbacks.sum());
+        stats.put("capacityBytes", capacity);
+        stats.put("allocatedBytes", allocated);
+        stats.put("occupancy", capacity == 0 ? 0 : (double) requested / capacity);
+        stats.put("internalFragmentation", allocated == 0 ? 0 : 1 - (double) requested / allocated);
+        stats.put("externalFragmentation", allocated + free == 0 ? 0 : (double) free / (allocated + free));
+        return stats;
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    private static void putString(@NotNull ByteBuffer block, @Nullable byte[] string) {
+        if (string == null) {
+            block.putInt(-1);
+            return;
+        }
+        block.putInt(string.length);
+        block.put(string);
+    }
+
+    @Nullable
+    private static String getString(@NotNull ByteBuffer block) {
+        int length = block.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] string = new byte[length];
+        block.get(string);
+        return new String(string, UTF_8);
+    }
+
+    private class OffHeapVideoList implements VideoList {
+        private final long address;
+        private final int blockSize;
+        @NotNull
+        private final ByteBuffer block;
+        private final int size;
+        // the owner's reference plus one per reader; the block is freed when the last one is dropped
+        @NotNull
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        OffHeapVideoList(long address, int blockSize, @NotNull ByteBuffer block) {
+            this.address = address;
+            this.blockSize = blockSize;
+            this.block = block;
+            this.size = block.getInt(0);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public long getPublishedAt(int index) {
+            return block.getLong(Integer.BYTES + index * Long.BYTES);
+        }
+
+        @NotNull
+        @Override
+        @SuppressWarnings("ConstantConditions")
+        public CachedVideo get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+
+            int offset = block.getInt(Integer.BYTES + size * Long.BYTES + index * Integer.BYTES);
+            ByteBuffer record = block.duplicate();
+            record.position(offset);
+            int thumbnailWidth = record.getInt();
+            int thumbnailHeight = record.getInt();
+            String id = getString(record);
+            String channelId = getString(record);
+            String title = getString(record);
+            String thumbnailUrl = getString(record);
+            return new CachedVideo(id, channelId, getPublishedAt(index), title, thumbnailUrl, thumbnailWidth, thumbnailHeight);
+        }
+
+        @Override
+        public void retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    throw new IllegalStateException("Video list has already been freed");
+                }
+            } while (!references.compareAndSet(count, count + 1));
+        }
+
+        @Override
+        public void release() {
+            int count = references.decrementAndGet();
+            if (count == 0) {
+                storedLists.decrement();
+                allocator.free(address, blockSize);
+            } else if (count < 0) {
+                throw new IllegalStateException("Video list has already been freed");
+            }
+        }
+    }
+
+}
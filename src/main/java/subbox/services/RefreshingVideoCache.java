@@ -1,28 +1,41 @@
 package subbox.services;
 
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
-import com.google.api.services.youtube.model.Playlist;
-import com.google.api.services.youtube.model.Video;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import org.apache.commons.lang3.mutable.MutableInt;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import subbox.model.PlaylistMetadata;
+import subbox.model.PlaylistPage;
+import subbox.util.ApiKeyPool;
+import subbox.util.CircuitBreaker;
+import subbox.util.CompositeFuture;
 import subbox.util.DurationFormatter;
 import subbox.util.MoreExecutors;
+import subbox.util.RequestTimings;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.*;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
@@ -34,24 +47,58 @@ public class RefreshingVideoCache implements VideoCache {
     @NotNull
     private static final Logger log = LoggerFactory.getLogger(RefreshingVideoCache.class);
 
+    private static final int MAX_PAGE_SIZE = 50;
+
     private static Duration evictionThreshold;
     private static Duration updatePeriod;
+    private static int initialVideosPerPlaylist;
+    private static int videosPerPlaylist;
+    private static Duration pushFallbackPollPeriod;
+    private static Duration pushMinRefreshInterval;
+    private static int probeParallelism;
+    private static int maxProbeFailures;
+    private static boolean offHeapStorage;
+    private static int offHeapSlabSize;
+    private static int offHeapMaxSlabs;
+    private static boolean diskTierEnabled;
+    private static Path diskTierFile;
+    private static long diskTierMaxBytes;
 
     @NotNull
     private final YouTubeService youTubeService;
     @NotNull
+    private final WebSubSubscriber webSubSubscriber;
+    @NotNull
     private final ConcurrentHashMap<String, PlaylistMetadata> metadataCache = new ConcurrentHashMap<>();
     @NotNull
-    private final LoadingCache<String, Future<List<Video>>> playlistCache;
+    private final LoadingCache<String, Future<CachedPlaylist>> playlistCache;
+    @NotNull
+    private final Set<String> pendingPushedRefreshes = ConcurrentHashMap.newKeySet();
+    @NotNull
+    private final ConcurrentHashMap<String, Long> lastPushedRefreshes = new ConcurrentHashMap<>();
 
     private ExecutorService loadExecutor;
+    private VideoStorage videoStorage;
+    @Nullable
+    private DiskPlaylistTier diskTier;
+    private ScheduledExecutorService scheduler;
     private ScheduledFuture<?> evictAndRefreshTask;
+    private ExecutorService probeExecutor;
+    private long sweepsSinceFullPoll;
+    @NotNull
+    private List<String> sweepPlaylistIds = List.of();
+    private int sweepPosition;
+    private int failingBatchStart = -1;
+    private int failingBatchFailures;
 
     @Autowired
-    public RefreshingVideoCache(@NotNull YouTubeService youTubeService) {
+    public RefreshingVideoCache(@NotNull YouTubeService youTubeService, @NotNull WebSubSubscriber webSubSubscriber) {
         this.youTubeService = youTubeService;
+        this.webSubSubscriber = webSubSubscriber;
         this.playlistCache = Caffeine.newBuilder()
-                .build(playlistId -> loadExecutor.submit(() -> this.youTubeService.getVideos(playlistId)));
+                .executor(command -> loadExecutor.execute(command))
+                .removalListener(this::releasePlaylist)
+                .build(new PlaylistCacheLoader());
     }
 
     @Value("${subbox.cache.eviction-threshold}")
@@ -64,14 +111,102 @@ public class RefreshingVideoCache implements VideoCache {
         RefreshingVideoCache.updatePeriod = updatePeriod;
     }
 
+    @Value("${subbox.cache.initial-videos-per-playlist}")
+    public void setInitialVideosPerPlaylist(int initialVideosPerPlaylist) {
+        RefreshingVideoCache.initialVideosPerPlaylist = initialVideosPerPlaylist;
+    }
+
+    @Value("${subbox.cache.videos-per-playlist}")
+    public void setVideosPerPlaylist(int videosPerPlaylist) {
+        RefreshingVideoCache.videosPerPlaylist = videosPerPlaylist > 0 ? videosPerPlaylist : Integer.MAX_VALUE;
+    }
+
+    @Value("${subbox.websub.fallback-poll-period}")
+    public void setPushFallbackPollPeriod(@NotNull Duration pushFallbackPollPeriod) {
+        RefreshingVideoCache.pushFallbackPollPeriod = pushFallbackPollPeriod;
+    }
+
+    @Value("${subbox.websub.min-refresh-interval}")
+    public void setPushMinRefreshInterval(@NotNull Duration pushMinRefreshInterval) {
+        RefreshingVideoCache.pushMinRefreshInterval = pushMinRefreshInterval;
+    }
+
+    @Value("${subbox.cache.probe-parallelism}")
+    public void setProbeParallelism(int probeParallelism) {
+        RefreshingVideoCache.probeParallelism = probeParallelism > 0 ? probeParallelism : 4 * Runtime.getRuntime().availableProcessors();
+    }
+
+    @Value("${subbox.cache.max-probe-failures}")
+    public void setMaxProbeFailures(int maxProbeFailures) {
+        RefreshingVideoCache.maxProbeFailures = maxProbeFailures;
+    }
+
+    @Value("${subbox.cache.storage}")
+    public void setStorage(@NotNull String storage) {
+        switch (storage) {
+            case "heap":
+                RefreshingVideoCache.offHeapStorage = false;
+                break;
+            case "off-heap":
+                RefreshingVideoCache.offHeapStorage = true;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown video storage \"" + storage + "\", expected heap or off-heap");
+        }
+    }
+
+    @Value("${subbox.cache.off-heap.slab-size}")
+    public void setOffHeapSlabSize(int offHeapSlabSize) {
+        RefreshingVideoCache.offHeapSlabSize = offHeapSlabSize;
+    }
+
+    @Value("${subbox.cache.off-heap.max-slabs}")
+    public void setOffHeapMaxSlabs(int offHeapMaxSlabs) {
+        RefreshingVideoCache.offHeapMaxSlabs = offHeapMaxSlabs;
+    }
+
+    @Value("${subbox.cache.disk.enabled}")
+    public void setDiskTierEnabled(boolean diskTierEnabled) {
+        RefreshingVideoCache.diskTierEnabled = diskTierEnabled;
+    }
+
+    @Value("${subbox.cache.disk.file}")
+    public void setDiskTierFile(@NotNull String diskTierFile) {
+        RefreshingVideoCache.diskTierFile = Paths.get(diskTierFile);
+    }
+
+    @Value("${subbox.cache.disk.max-bytes}")
+    public void setDiskTierMaxBytes(long diskTierMaxBytes) {
+        RefreshingVideoCache.diskTierMaxBytes = diskTierMaxBytes;
+    }
+
     @PostConstruct
     public void init() {
+        if (offHeapStorage) {
+            log.info("Initializing off-heap video storage with {} slabs of {} bytes", offHeapMaxSlabs, offHeapSlabSize);
+            videoStorage = new OffHeapVideoStorage(offHeapSlabSize, offHeapMaxSlabs);
+        } else {
+            videoStorage = HeapVideoStorage.INSTANCE;
+        }
+
+        if (diskTierEnabled) {
+            log.info("Initializing disk tier at {} bounded to {} bytes", diskTierFile, diskTierMaxBytes);
+            try {
+                diskTier = new DiskPlaylistTier(diskTierFile, diskTierMaxBytes);
+            } catch (IOException e) {
+                log.warn("Could not open disk tier at {}, idle playlists will be evicted", diskTierFile, e);
+            }
+        }
+
         log.info("Initializing load thread pool");
         loadExecutor = MoreExecutors.newBoundedCachedThreadPool(32);
 
+        log.info("Initializing probe thread pool");
+        probeExecutor = MoreExecutors.newBoundedCachedThreadPool(probeParallelism);
+
         log.info("Initializing evictAndRefresh task");
-        evictAndRefreshTask = Executors.newSingleThreadScheduledExecutor()
-                .scheduleAtFixedRate(this::evictAndRefresh, updatePeriod.toNanos(), updatePeriod.toNanos(), NANOSECONDS);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        evictAndRefreshTask = scheduler.scheduleAtFixedRate(this::evictAndRefresh, updatePeriod.toNanos(), updatePeriod.toNanos(), NANOSECONDS);
     }
 
     @PreDestroy
@@ -79,60 +214,252 @@ public class RefreshingVideoCache implements VideoCache {
         loadExecutor.shutdown();
         log.info("Cancelling evictAndRefresh task");
         evictAndRefreshTask.cancel(false);
+        scheduler.shutdownNow();
+        probeExecutor.shutdown();
         try {
             log.info("Waiting for the load thread pool to die");
             loadExecutor.awaitTermination(1, MINUTES);
         } catch (InterruptedException ignored) {
         }
+        videoStorage.destroy();
+        if (diskTier != null) {
+            log.info("Closing disk tier");
+            diskTier.close();
+        }
     }
 
     @Override
     @NotNull
-    public Future<List<List<Video>>> get(@NotNull List<String> playlistIds) {
-        updateMetadataCache(playlistIds);
-        return allOf(playlistCache.getAll(playlistIds).values());
+    public CompositeFuture<String, CachedPlaylist> get(@NotNull List<String> playlistIds) {
+        List<String> newPlaylistIds;
+        try (RequestTimings.Stage ignored = RequestTimings.stage("metadata")) {
+            newPlaylistIds = registerNewPlaylists(playlistIds);
+        }
+        List<String> promotedPlaylistIds = promoteFromDisk(newPlaylistIds);
+        if (!promotedPlaylistIds.isEmpty()) {
+            Set<String> promoted = new HashSet<>(promotedPlaylistIds);
+            newPlaylistIds.removeIf(promoted::contains);
+            revalidatePromoted(promotedPlaylistIds);
+        }
+        if (!newPlaylistIds.isEmpty()) {
+            fetchETags(newPlaylistIds);
+        }
+        if (RequestTimings.isSampled()) {
+            recordPlaylistCacheUsage(playlistIds);
+        }
+        return new CompositeFuture<>(playlistCache.getAll(playlistIds));
+    }
+
+    @Override
+    @NotNull
+    public Future<?> loadNextPage(@NotNull CachedPlaylist playlist) {
+        return playlist.loadNextPage(loadExecutor);
+    }
+
+    @Nullable
+    String getETag(@NotNull String playlistId) {
+        PlaylistMetadata metadata = metadataCache.get(playlistId);
+        return metadata != null ? metadata.getETag() : null;
+    }
+
+    @NotNull
+    public Map<String, ?> getStorageStats() {
+        return videoStorage.getStats();
+    }
+
+    @NotNull
+    public Map<String, ?> getDiskTierStats() {
+        DiskPlaylistTier tier = diskTier;
+        return tier != null ? tier.getStats() : Map.of("enabled", false);
     }
 
-    private void updateMetadataCache(@NotNull List<String> playlistIds) {
-        List<String> playlistIdsToDownload = filterAbsentIds(playlistIds);
-        getMetadata(playlistIdsToDownload);
+    private void recordPlaylistCacheUsage(@NotNull List<String> playlistIds) {
+        Map<String, Future<CachedPlaylist>> present = playlistCache.getAllPresent(playlistIds);
+        long loaded = present.values()
+                .stream()
+                .filter(Future::isDone)
+                .count();
+        RequestTimings.record("playlistHits", loaded);
+        RequestTimings.record("playlistsLoading", present.size() - loaded);
+        RequestTimings.record("playlistMisses", playlistIds.size() - present.size());
     }
 
     @NotNull
-    private List<String> filterAbsentIds(@NotNull List<String> playlistIds) {
-        List<String> absentPlaylistIds = new ArrayList<>();
+    private List<String> registerNewPlaylists(@NotNull List<String> playlistIds) {
+        List<String> newPlaylistIds = new ArrayList<>();
         for (String playlistId : playlistIds) {
             PlaylistMetadata metadata = metadataCache.get(playlistId);
-            if (metadata == null) {
-                absentPlaylistIds.add(playlistId);
-            } else {
+            if (metadata != null) {
                 metadata.accessed();
+            } else if (metadataCache.putIfAbsent(playlistId, new PlaylistMetadata()) == null) {
+                newPlaylistIds.add(playlistId);
             }
         }
-        return absentPlaylistIds;
+        RequestTimings.record("metadataMisses", newPlaylistIds.size());
+        return newPlaylistIds;
     }
 
-    private void getMetadata(@NotNull List<String> playlistIds) {
-        List<Playlist> downloadedPlaylists = youTubeService.getPlaylists(playlistIds);
-        for (int i = 0; i < playlistIds.size(); i++) {
-            String playlistETag = downloadedPlaylists.get(i).getEtag();
-            PlaylistMetadata metadata = new PlaylistMetadata(playlistETag);
-            metadataCache.put(playlistIds.get(i), metadata);
+    private void fetchETags(@NotNull List<String> playlistIds) {
+        long issuedAt = System.nanoTime();
+        CompletableFuture.supplyAsync(() -> youTubeService.getPlaylistETags(playlistIds), loadExecutor)
+                .whenComplete((eTags, error) -> {
+                    if (error != null) {
+                        log.warn("Fetching ETags of {} new playlists failed, they will be refreshed on the next sweep", playlistIds.size(), error);
+                        return;
+                    }
+                    for (String playlistId : playlistIds) {
+                        registerETag(playlistId, eTags.get(playlistId), issuedAt);
+                    }
+                });
+    }
+
+    private void registerETag(@NotNull String playlistId, @Nullable String eTag, long issuedAt) {
+        PlaylistMetadata metadata = metadataCache.get(playlistId);
+        if (metadata == null) {
+            return;
+        }
+        if (eTag == null) {
+            metadataCache.remove(playlistId, metadata);
+            return;
+        }
+
+        webSubSubscriber.subscribe(playlistId);
+        Future<CachedPlaylist> playlist = playlistCache.getIfPresent(playlistId);
+        if (!(playlist instanceof CompletableFuture)) {
+            metadata.setETag(eTag);
+            return;
+        }
+        // A download that started after the ETag was requested is at least as new as the ETag. One that started
+        // before may predate it, so its ETag stays invalidated and the next sweep refreshes it. A failed download
+        // is loaded again on the next request.
+        ((CompletableFuture<CachedPlaylist>) playlist).thenAccept(cachedPlaylist -> {
+            if (cachedPlaylist.getLoadStartedAt() - issuedAt >= 0 && metadata.getETag().isEmpty()) {
+                metadata.setETag(eTag);
+            }
+        });
+    }
+
+    @NotNull
+    private List<String> promoteFromDisk(@NotNull List<String> playlistIds) {
+        if (diskTier == null || playlistIds.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> promotedPlaylistIds = new ArrayList<>();
+        try (RequestTimings.Stage ignored = RequestTimings.stage("disk")) {
+            for (String playlistId : playlistIds) {
+                long start = System.nanoTime();
+                DiskPlaylistTier.Demoted demoted = diskTier.promote(playlistId);
+                if (demoted == null) {
+                    continue;
+                }
+
+                CachedPlaylist playlist = new CachedPlaylist(playlistId, youTubeService::getVideos, videoStorage, MAX_PAGE_SIZE,
+                        videosPerPlaylist, demoted.getPage(), System.nanoTime() - start);
+                PlaylistMetadata metadata = metadataCache.get(playlistId);
+                if (metadata == null || playlistCache.asMap().putIfAbsent(playlistId, CompletableFuture.completedFuture(playlist)) != null) {
+                    playlist.release();
+                    continue;
+                }
+                metadata.setETag(demoted.getETag());
+                promotedPlaylistIds.add(playlistId);
+            }
+        }
+        RequestTimings.record("diskHits", promotedPlaylistIds.size());
+        return promotedPlaylistIds;
+    }
+
+    private void revalidatePromoted(@NotNull List<String> playlistIds) {
+        CompletableFuture.supplyAsync(() -> youTubeService.getPlaylistETags(playlistIds), loadExecutor)
+                .whenComplete((eTags, error) -> {
+                    if (error != null) {
+                        log.warn("Revalidating {} playlists promoted from disk failed, they will be refreshed on the next sweep", playlistIds.size(), error);
+                        for (String playlistId : playlistIds) {
+                            PlaylistMetadata metadata = metadataCache.get(playlistId);
+                            if (metadata != null) {
+                                metadata.invalidateETag();
+                            }
+                        }
+                        return;
+                    }
+                    for (String playlistId : playlistIds) {
+                        if (eTags.containsKey(playlistId)) {
+                            webSubSubscriber.subscribe(playlistId);
+                        } else {
+                            metadataCache.remove(playlistId);
+                        }
+                    }
+                    refreshChanged(eTags);
+                });
+    }
+
+    public void refreshNow(@NotNull String playlistId) {
+        PlaylistMetadata metadata = metadataCache.get(playlistId);
+        if (metadata == null) {
+            return;
+        }
+        // notifications arrive in bursts for every edit of a video, so they are coalesced per playlist
+        if (!pendingPushedRefreshes.add(playlistId)) {
+            log.debug("Refresh of pushed playlist \"{}\" is already pending", playlistId);
+            return;
+        }
+
+        Runnable refresh = () -> {
+            pendingPushedRefreshes.remove(playlistId);
+            lastPushedRefreshes.put(playlistId, System.nanoTime());
+            try {
+                String eTag = youTubeService.getPlaylistETags(List.of(playlistId)).get(playlistId);
+                if (eTag != null) {
+                    metadata.setETag(eTag);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Fetching ETag of pushed playlist \"{}\" failed", playlistId, e);
+            }
+            playlistCache.refresh(playlistId);
+        };
+
+        Long lastRefresh = lastPushedRefreshes.get(playlistId);
+        long delay = lastRefresh == null ? 0 : lastRefresh + pushMinRefreshInterval.toNanos() - System.nanoTime();
+        if (delay <= 0) {
+            log.debug("Refreshing pushed playlist \"{}\"", playlistId);
+            loadExecutor.execute(refresh);
+        } else {
+            log.debug("Refreshing pushed playlist \"{}\" in {}", playlistId, DurationFormatter.format(Duration.ofNanos(delay)));
+            scheduler.schedule(() -> loadExecutor.execute(refresh), delay, NANOSECONDS);
         }
     }
 
     private void evictAndRefresh() {
+        try {
+            doEvictAndRefresh();
+        } catch (RuntimeException e) {
+            log.warn("evictAndRefresh: failed, leaving cached playlists as they are", e);
+        }
+    }
+
+    private void doEvictAndRefresh() {
         ZonedDateTime start = ZonedDateTime.now();
+        evict();
+        refresh(start.plus(updatePeriod));
+        log.debug("evictAndRefresh: finished in {}", DurationFormatter.format(Duration.between(start, ZonedDateTime.now())));
+    }
+
+    void evict() {
         log.debug("evictAndRefresh: evicting invalid and expired entries");
         log.debug("evictAndRefresh: {} metadata and {} playlists present before eviction", metadataCache.size(), playlistCache.estimatedSize());
 
         MutableInt evictedMetadata = new MutableInt();
         MutableInt evictedPlaylists = new MutableInt();
+        MutableInt demotedPlaylists = new MutableInt();
         metadataCache.entrySet()
                 .removeIf(entry -> {
-                    if (entry.getValue().isOlderThan(evictionThreshold) ||
-                            playlistCache.getIfPresent(entry.getKey()) == null) {
+                    boolean idle = entry.getValue().isOlderThan(evictionThreshold);
+                    if (idle || playlistCache.getIfPresent(entry.getKey()) == null) {
                         evictedMetadata.increment();
+                        if (idle && demote(entry.getKey(), entry.getValue())) {
+                            demotedPlaylists.increment();
+                        }
+                        webSubSubscriber.unsubscribe(entry.getKey());
                         return true;
                     }
                     return false;
@@ -146,71 +473,207 @@ public class RefreshingVideoCache implements VideoCache {
                     }
                     return false;
                 });
+        long now = System.nanoTime();
+        lastPushedRefreshes.values().removeIf(lastRefresh -> now - lastRefresh >= pushMinRefreshInterval.toNanos());
 
-        log.debug("evictAndRefresh: evicted {} metadata and {} playlists", evictedMetadata, evictedPlaylists);
+        log.debug("evictAndRefresh: evicted {} metadata and {} playlists, demoted {} to disk", evictedMetadata, evictedPlaylists, demotedPlaylists);
         log.debug("evictAndRefresh: {} metadata and {} playlists present after eviction", metadataCache.size(), playlistCache.estimatedSize());
+    }
+
+    private boolean demote(@NotNull String playlistId, @NotNull PlaylistMetadata metadata) {
+        Future<CachedPlaylist> playlist = playlistCache.getIfPresent(playlistId);
+        if (diskTier == null || metadata.getETag().isEmpty() || playlist == null || !playlist.isDone() || playlist.isCancelled()) {
+            return false;
+        }
+
+        CachedPlaylist cachedPlaylist;
+        try {
+            cachedPlaylist = playlist.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return false;
+        }
+        // stale contents would outlive the failed refresh that produced them
+        return !cachedPlaylist.isStale() && diskTier.demote(playlistId, metadata.getETag(), cachedPlaylist.toPage());
+    }
+
+    int refresh(@NotNull ZonedDateTime deadline) {
         log.debug("evictAndRefresh: refreshing stale playlists");
+        webSubSubscriber.renewLeases(metadataCache.keySet());
+
+        if (sweepPosition >= sweepPlaylistIds.size()) {
+            startSweep();
+        } else {
+            log.debug("evictAndRefresh: resuming sweep at {} of {} playlists", sweepPosition, sweepPlaylistIds.size());
+        }
+
+        int refreshedPlaylists = probeETags(deadline);
+
+        log.debug("evictAndRefresh: refreshed {} playlists, swept {} of {}", refreshedPlaylists, sweepPosition, sweepPlaylistIds.size());
+        return refreshedPlaylists;
+    }
 
-        MutableInt refreshedPlaylists = new MutableInt();
-        List<Playlist> playlists = youTubeService.getPlaylists(new ArrayList<>(metadataCache.keySet()));
-        for (Playlist playlist : playlists) {
-            String id = playlist.getId();
+    private void startSweep() {
+        List<String> playlistIdsToPoll = new ArrayList<>(metadataCache.keySet());
+        if (sweepsSinceFullPoll++ * updatePeriod.toNanos() < pushFallbackPollPeriod.toNanos()) {
+            playlistIdsToPoll.removeIf(webSubSubscriber::isPushCovered);
+        } else {
+            sweepsSinceFullPoll = 1;
+        }
+        log.debug("evictAndRefresh: starting sweep over {} of {} playlists", playlistIdsToPoll.size(), metadataCache.size());
+
+        sweepPlaylistIds = playlistIdsToPoll;
+        sweepPosition = 0;
+        failingBatchStart = -1;
+    }
+
+    private int probeETags(@NotNull ZonedDateTime deadline) {
+        CompletionService<Map<String, String>> probes = new ExecutorCompletionService<>(probeExecutor);
+        Map<Future<Map<String, String>>, Integer> batchStarts = new HashMap<>();
+        int nextBatchStart = sweepPosition;
+        TreeMap<Integer, Throwable> failedBatches = new TreeMap<>();
+        int refreshedPlaylists = 0;
+
+        while (true) {
+            while (batchStarts.size() < probeParallelism && nextBatchStart < sweepPlaylistIds.size() &&
+                    failedBatches.isEmpty() && ZonedDateTime.now().isBefore(deadline)) {
+                List<String> batch = sweepPlaylistIds.subList(nextBatchStart, Math.min(nextBatchStart + MAX_PAGE_SIZE, sweepPlaylistIds.size()));
+                batchStarts.put(probes.submit(() -> youTubeService.getPlaylistETags(batch)), nextBatchStart);
+                nextBatchStart += batch.size();
+            }
+            if (batchStarts.isEmpty()) {
+                break;
+            }
+
+            Future<Map<String, String>> probe = takeUninterrupted(probes);
+            int batchStart = batchStarts.remove(probe);
+            try {
+                refreshedPlaylists += refreshChanged(probe.get());
+            } catch (ExecutionException | InterruptedException e) {
+                log.warn("evictAndRefresh: probing playlists from {} of sweep failed", batchStart, e.getCause());
+                failedBatches.put(batchStart, e.getCause());
+            }
+        }
+
+        sweepPosition = failedBatches.isEmpty() ? nextBatchStart : resumeAfterFailure(failedBatches, nextBatchStart);
+        return refreshedPlaylists;
+    }
+
+    private int resumeAfterFailure(@NotNull TreeMap<Integer, Throwable> failedBatches, int nextBatchStart) {
+        Map.Entry<Integer, Throwable> firstFailed = failedBatches.firstEntry();
+        // an open breaker or exhausted quota fails every batch, only the breaker's reopening should end that
+        Throwable cause = firstFailed.getValue();
+        if (cause instanceof CircuitBreaker.OpenException || cause instanceof ApiKeyPool.ExhaustedException) {
+            return firstFailed.getKey();
+        }
+
+        if (firstFailed.getKey() != failingBatchStart) {
+            failingBatchStart = firstFailed.getKey();
+            failingBatchFailures = 0;
+        }
+        if (++failingBatchFailures < maxProbeFailures) {
+            return failingBatchStart;
+        }
+
+        int batchEnd = Math.min(failingBatchStart + MAX_PAGE_SIZE, sweepPlaylistIds.size());
+        log.warn("evictAndRefresh: skipping playlists {} to {} of sweep after {} failed probes: {}",
+                failingBatchStart, batchEnd, failingBatchFailures, sweepPlaylistIds.subList(failingBatchStart, batchEnd));
+        failingBatchStart = -1;
+        Integer nextFailedBatchStart = failedBatches.higherKey(firstFailed.getKey());
+        return nextFailedBatchStart != null ? nextFailedBatchStart : nextBatchStart;
+    }
+
+    private int refreshChanged(@NotNull Map<String, String> eTags) {
+        int refreshedPlaylists = 0;
+        for (Map.Entry<String, String> entry : eTags.entrySet()) {
+            String id = entry.getKey();
             PlaylistMetadata cachedPlaylist = metadataCache.get(id);
-            if (Objects.equals(cachedPlaylist.getETag(), playlist.getEtag())) {
+            if (cachedPlaylist == null || Objects.equals(cachedPlaylist.getETag(), entry.getValue())) {
                 continue;
             }
 
-            refreshedPlaylists.increment();
-            cachedPlaylist.setETag(playlist.getEtag());
+            refreshedPlaylists++;
+            cachedPlaylist.setETag(entry.getValue());
             playlistCache.refresh(id);
         }
-
-        log.debug("evictAndRefresh: refreshed {} playlists", refreshedPlaylists);
-        log.debug("evictAndRefresh: finished in {}", DurationFormatter.format(Duration.between(start, ZonedDateTime.now())));
+        return refreshedPlaylists;
     }
 
     @NotNull
-    private static <V> Future<List<V>> allOf(Collection<? extends Future<? extends V>> futures) {
-        return new CompositeFuture<>(futures);
+    private static <V> Future<V> takeUninterrupted(@NotNull CompletionService<V> completionService) {
+        try {
+            return completionService.take();
+        } catch (InterruptedException e) {
+            throw new Error("Thread was interrupted", e);
+        }
     }
 
-    private static class CompositeFuture<V> implements Future<List<V>> {
-        private final Collection<? extends Future<? extends V>> futures;
+    @NotNull
+    private CachedPlaylist loadPlaylist(@NotNull String playlistId, int depth) {
+        int initialDepth = Math.min(Math.max(initialVideosPerPlaylist, depth), videosPerPlaylist);
+        long start = System.nanoTime();
+        PlaylistPage firstPage = youTubeService.getVideos(playlistId, null, initialDepth);
+        return new CachedPlaylist(playlistId, youTubeService::getVideos, videoStorage, MAX_PAGE_SIZE, videosPerPlaylist,
+                firstPage, System.nanoTime() - start);
+    }
 
-        CompositeFuture(Collection<? extends Future<? extends V>> futures) {
-            this.futures = futures;
+    private void releasePlaylist(@Nullable String playlistId,
+                                 @Nullable Future<CachedPlaylist> playlist,
+                                 @NotNull RemovalCause cause) {
+        if (playlistId == null || playlist == null || !playlist.isDone() || playlist.isCancelled()) {
+            return;
         }
-
-        @Override
-        public boolean cancel(boolean mayInterruptIfRunning) {
-            return false;
+        if (playlistCache.asMap().get(playlistId) == playlist) {
+            return;
         }
 
-        @Override
-        public boolean isCancelled() {
-            return futures.stream().anyMatch(Future::isCancelled);
+        try {
+            playlist.get().release();
+        } catch (InterruptedException | ExecutionException ignored) {
         }
+    }
 
+    private class PlaylistCacheLoader implements CacheLoader<String, Future<CachedPlaylist>> {
+        @NotNull
         @Override
-        public boolean isDone() {
-            return futures.stream().allMatch(Future::isDone);
+        public Future<CachedPlaylist> load(@NotNull String playlistId) {
+            CompletableFuture<CachedPlaylist> future = CompletableFuture.supplyAsync(() -> loadPlaylist(playlistId, 0), loadExecutor);
+            future.whenComplete((playlist, error) -> {
+                if (error != null) {
+                    log.warn("Loading playlist \"{}\" failed", playlistId, error);
+                    playlistCache.asMap().remove(playlistId, future);
+                }
+            });
+            return future;
         }
 
+        @NotNull
         @Override
-        public List<V> get() throws InterruptedException, ExecutionException {
-            if (isCancelled()) {
-                throw new CancellationException();
+        public Future<CachedPlaylist> reload(@NotNull String playlistId, @NotNull Future<CachedPlaylist> oldValue) throws Exception {
+            CachedPlaylist oldPlaylist = oldValue.isDone() && !oldValue.isCancelled() ? getOrNull(oldValue) : null;
+            if (oldPlaylist == null) {
+                return load(playlistId);
             }
-            List<V> result = new ArrayList<>();
-            for (Future<? extends V> future : futures) {
-                result.add(future.get());
+
+            try {
+                return CompletableFuture.completedFuture(loadPlaylist(playlistId, oldPlaylist.getReadDepth()));
+            } catch (RuntimeException e) {
+                log.warn("Refreshing playlist \"{}\" failed, serving stale contents", playlistId, e);
+                PlaylistMetadata metadata = metadataCache.get(playlistId);
+                if (metadata != null) {
+                    metadata.invalidateETag();
+                }
+                oldPlaylist.markStale();
+                return oldValue;
             }
-            return result;
         }
 
-        @Override
-        public List<V> get(long timeout, @NotNull TimeUnit unit) {
-            throw new UnsupportedOperationException("get(long, TimeUnit)");
+        @Nullable
+        private CachedPlaylist getOrNull(@NotNull Future<CachedPlaylist> future) throws InterruptedException {
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                return null;
+            }
         }
     }
 
@@ -0,0 +1,231 @@
+package subbox.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import subbox.util.Maps;
+import subbox.util.RequestTimings;
+import subbox.util.SingleFlight;
+
+import javax.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class ResponsePageCache {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(ResponsePageCache.class);
+
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private static long maximumBytes;
+
+    public enum Encoding {
+        IDENTITY, GZIP
+    }
+
+    @NotNull
+    private final LongAdder uncompressedBytes = new LongAdder();
+    @NotNull
+    private final LongAdder compressedBytes = new LongAdder();
+    @NotNull
+    private final SingleFlight<PageKey, CachedPage> renders = new SingleFlight<>();
+
+    private Cache<PageKey, CachedPage> pages;
+
+    @Value("${subbox.page-cache.maximum-bytes}")
+    public void setMaximumBytes(long maximumBytes) {
+        ResponsePageCache.maximumBytes = maximumBytes;
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("Initializing response page cache of {} bytes", maximumBytes);
+        pages = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .weigher((PageKey key, CachedPage page) -> ENTRY_OVERHEAD + key.weight() + page.body.length)
+                .recordStats()
+                .build();
+    }
+
+    @NotNull
+    public byte[] get(@NotNull List<String> channelIds,
+                      int perPage,
+                      long page,
+                      @NotNull FeedFormat format,
+                      @NotNull Encoding encoding,
+                      @NotNull List<CachedPlaylist> playlists,
+                      @NotNull Supplier<byte[]> renderer,
+                      @NotNull BooleanSupplier complete) {
+        PageKey key = new PageKey(channelIds, perPage, page, format, encoding);
+        long[] versions = playlists.stream()
+                .mapToLong(CachedPlaylist::getVersion)
+                .toArray();
+
+        CachedPage cachedPage = pages.getIfPresent(key);
+        if (cachedPage != null && Arrays.equals(cachedPage.versions, versions)) {
+            RequestTimings.record("pageCache", "hit");
+            return cachedPage.body;
+        }
+
+        // concurrent misses share one render, unless they saw different playlist versions or it was incomplete
+        SingleFlight.Result<CachedPage> rendered = render(key, versions, encoding, renderer, complete);
+        if (!rendered.isCollapsed() || (rendered.getValue().complete && Arrays.equals(rendered.getValue().versions, versions))) {
+            RequestTimings.record("pageCache", rendered.isCollapsed() ? "collapsed" : "miss");
+            return rendered.getValue().body;
+        }
+
+        RequestTimings.record("pageCache", "miss");
+        byte[] body = renderAndEncode(encoding, renderer);
+        if (complete.getAsBoolean()) {
+            pages.put(key, new CachedPage(versions, body, true));
+        }
+        return body;
+    }
+
+    @NotNull
+    public byte[] bypass(@NotNull Encoding encoding, @NotNull Supplier<byte[]> renderer) {
+        RequestTimings.record("pageCache", "bypass");
+        return renderAndEncode(encoding, renderer);
+    }
+
+    @NotNull
+    public Map<String, ?> getStats() {
+        long uncompressed = uncompressedBytes.sum();
+        long compressed = compressedBytes.sum();
+        return Maps.orderedMapOf(
+                "hitRate", pages.stats().hitRate(),
+                "entries", pages.estimatedSize(),
+                "bytes", pages.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L),
+                "compressionRatio", compressed == 0 ? 0 : (double) uncompressed / compressed,
+                "renders", renders.getStats()
+        );
+    }
+
+    @NotNull
+    private SingleFlight.Result<CachedPage> render(@NotNull PageKey key,
+                                                   @NotNull long[] versions,
+                                                   @NotNull Encoding encoding,
+                                                   @NotNull Supplier<byte[]> renderer,
+                                                   @NotNull BooleanSupplier complete) {
+        try {
+            return renders.execute(key, () -> {
+                CachedPage cachedPage = pages.getIfPresent(key);
+                if (cachedPage != null && Arrays.equals(cachedPage.versions, versions)) {
+                    return cachedPage;
+                }
+                byte[] body = renderAndEncode(encoding, renderer);
+                // a page missing videos would be served in place of the complete one until a playlist changes
+                cachedPage = new CachedPage(versions, body, complete.getAsBoolean());
+                if (cachedPage.complete) {
+                    pages.put(key, cachedPage);
+                }
+                return cachedPage;
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @NotNull
+    private byte[] renderAndEncode(@NotNull Encoding encoding, @NotNull Supplier<byte[]> renderer) {
+        byte[] rendered = renderer.get();
+        try (RequestTimings.Stage ignored = RequestTimings.stage("compress")) {
+            return encode(rendered, encoding);
+        }
+    }
+
+    @NotNull
+    private byte[] encode(@NotNull byte[] body, @NotNull Encoding encoding) {
+        if (encoding == Encoding.IDENTITY) {
+            return body;
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        uncompressedBytes.add(body.length);
+        compressedBytes.add(compressed.size());
+        log.debug("Compressed page of {} bytes to {} bytes", body.length, compressed.size());
+        return compressed.toByteArray();
+    }
+
+    private static class PageKey {
+        @NotNull
+        private final List<String> channelIds;
+        private final int perPage;
+        private final long page;
+        @NotNull
+        private final FeedFormat format;
+        @NotNull
+        private final Encoding encoding;
+
+        PageKey(@NotNull List<String> channelIds, int perPage, long page, @NotNull FeedFormat format, @NotNull Encoding encoding) {
+            this.channelIds = List.copyOf(channelIds);
+            this.perPage = perPage;
+            this.page = page;
+            this.format = format;
+            this.encoding = encoding;
+        }
+
+        int weight() {
+            return channelIds.stream()
+                    .mapToInt(channelId -> 2 * channelId.length())
+                    .sum();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            PageKey pageKey = (PageKey) o;
+            return perPage == pageKey.perPage &&
+                    page == pageKey.page &&
+                    channelIds.equals(pageKey.channelIds) &&
+                    format == pageKey.format &&
+                    encoding == pageKey.encoding;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(channelIds, perPage, page, format, encoding);
+        }
+    }
+
+    private static class CachedPage {
+        @NotNull
+        private final long[] versions;
+        @NotNull
+        private final byte[] body;
+        private final boolean complete;
+
+        CachedPage(@NotNull long[] versions, @NotNull byte[] body, boolean complete) {
+            this.versions = versions;
+            this.body = body;
+            this.complete = complete;
+        }
+    }
+
+}
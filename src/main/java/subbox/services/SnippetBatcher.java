@@ -0,0 +1,131 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import subbox.model.CachedVideo;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+class SnippetBatcher {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(SnippetBatcher.class);
+
+    private final int batchSize;
+    @NotNull
+    private final Duration linger;
+    @NotNull
+    private final Function<List<String>, CompletableFuture<List<CachedVideo>>> fetcher;
+    @NotNull
+    private final ScheduledExecutorService scheduler;
+    @NotNull
+    private final ConcurrentHashMap<String, CompletableFuture<CachedVideo>> inFlight = new ConcurrentHashMap<>();
+    @NotNull
+    private final Queue<String> pending = new ArrayDeque<>();
+    @Nullable
+    private ScheduledFuture<?> lingerTask;
+
+    SnippetBatcher(int batchSize,
+                   @NotNull Duration linger,
+                   @NotNull Function<List<String>, CompletableFuture<List<CachedVideo>>> fetcher,
+                   @NotNull ScheduledExecutorService scheduler) {
+        this.batchSize = batchSize;
+        this.linger = linger;
+        this.fetcher = fetcher;
+        this.scheduler = scheduler;
+    }
+
+    @NotNull
+    CompletableFuture<List<CachedVideo>> fetch(@NotNull List<String> videoIds) {
+        List<CompletableFuture<CachedVideo>> futures = new ArrayList<>(videoIds.size());
+        List<String> newIds = new ArrayList<>();
+        for (String videoId : videoIds) {
+            CompletableFuture<CachedVideo> future = new CompletableFuture<>();
+            CompletableFuture<CachedVideo> existing = inFlight.putIfAbsent(videoId, future);
+            if (existing == null) {
+                newIds.add(videoId);
+                futures.add(future);
+            } else {
+                futures.add(existing);
+            }
+        }
+        enqueue(newIds);
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .thenApply(ignored -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .filter(Objects::nonNull)
+                        .collect(toList()));
+    }
+
+    private synchronized void enqueue(@NotNull List<String> videoIds) {
+        pending.addAll(videoIds);
+        while (pending.size() >= batchSize) {
+            dispatch(batchSize);
+        }
+        if (!pending.isEmpty() && lingerTask == null) {
+            lingerTask = scheduler.schedule(this::flush, linger.toNanos(), NANOSECONDS);
+        }
+    }
+
+    private synchronized void flush() {
+        lingerTask = null;
+        while (!pending.isEmpty()) {
+            dispatch(Math.min(batchSize, pending.size()));
+        }
+    }
+
+    private void dispatch(int size) {
+        List<String> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(pending.remove());
+        }
+
+        log.debug("Dispatching snippet batch of {} video ids, {} still pending", batch.size(), pending.size());
+        try {
+            fetcher.apply(batch).whenComplete((videos, error) -> complete(batch, videos, error));
+        } catch (RuntimeException e) {
+            log.warn("Dispatching snippet batch of {} video ids failed", batch.size(), e);
+            complete(batch, null, e);
+        }
+    }
+
+    private void complete(@NotNull List<String> batch, @Nullable List<CachedVideo> videos, @Nullable Throwable error) {
+        Map<String, CachedVideo> videosById = new HashMap<>();
+        if (videos != null) {
+            for (CachedVideo video : videos) {
+                videosById.put(video.getId(), video);
+            }
+        }
+
+        for (String videoId : batch) {
+            CompletableFuture<CachedVideo> future = inFlight.remove(videoId);
+            if (future == null) {
+                continue;
+            }
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(videosById.get(videoId));
+            }
+        }
+    }
+
+}
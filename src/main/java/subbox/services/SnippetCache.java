@@ -0,0 +1,73 @@
+package subbox.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import subbox.model.CachedVideo;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+final class SnippetCache {
+
+    @NotNull
+    private final Cache<String, CachedVideo> snippets;
+    @NotNull
+    private final Cache<String, String> missingTitles;
+
+    SnippetCache(long maximumSize, @NotNull Duration expireAfterWrite, @NotNull Duration missingExpireAfterWrite) {
+        this(maximumSize, expireAfterWrite, missingExpireAfterWrite, Ticker.systemTicker());
+    }
+
+    SnippetCache(long maximumSize,
+                 @NotNull Duration expireAfterWrite,
+                 @NotNull Duration missingExpireAfterWrite,
+                 @NotNull Ticker ticker) {
+        this.snippets = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite.toNanos(), NANOSECONDS)
+                .ticker(ticker)
+                .build();
+        this.missingTitles = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(missingExpireAfterWrite.toNanos(), NANOSECONDS)
+                .ticker(ticker)
+                .build();
+    }
+
+    // a changed playlist item title means the video was edited, so its cached snippet is outdated
+    @Nullable
+    CachedVideo get(@NotNull String videoId, @Nullable String title) {
+        CachedVideo video = snippets.getIfPresent(videoId);
+        return video != null && video.getTitle().equals(title) ? video : null;
+    }
+
+    // private and deleted videos stay in uploads playlists but videos().list never returns them;
+    // they are skipped until the entry expires or the item title changes, e.g. when the video is made public
+    boolean isMissing(@NotNull String videoId, @Nullable String title) {
+        String missingTitle = missingTitles.getIfPresent(videoId);
+        return missingTitle != null && missingTitle.equals(title);
+    }
+
+    void putAll(@NotNull List<String> requestedIds, @NotNull List<String> titles, @NotNull List<CachedVideo> fetchedVideos) {
+        Set<String> fetchedIds = new HashSet<>();
+        for (CachedVideo video : fetchedVideos) {
+            snippets.put(video.getId(), video);
+            missingTitles.invalidate(video.getId());
+            fetchedIds.add(video.getId());
+        }
+        for (int i = 0; i < requestedIds.size(); i++) {
+            String title = titles.get(i);
+            if (!fetchedIds.contains(requestedIds.get(i)) && title != null) {
+                missingTitles.put(requestedIds.get(i), title);
+            }
+        }
+    }
+
+}
@@ -1,7 +1,7 @@
 package subbox.services;
 
-import com.google.api.services.youtube.model.Video;
 import org.jetbrains.annotations.NotNull;
+import subbox.util.CompositeFuture;
 
 import java.util.List;
 import java.util.concurrent.Future;
@@ -9,6 +9,9 @@ import java.util.concurrent.Future;
 interface VideoCache {
 
     @NotNull
-    Future<List<List<Video>>> get(@NotNull List<String> playlistIds);
+    CompositeFuture<String, CachedPlaylist> get(@NotNull List<String> playlistIds);
+
+    @NotNull
+    Future<?> loadNextPage(@NotNull CachedPlaylist playlist);
 
 }
@@ -0,0 +1,32 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import subbox.model.CachedVideo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+interface VideoList {
+
+    int size();
+
+    long getPublishedAt(int index);
+
+    @NotNull
+    CachedVideo get(int index);
+
+    // takes another reference for a reader; every reference is dropped with release()
+    void retain();
+
+    void release();
+
+    @NotNull
+    default List<CachedVideo> toList() {
+        List<CachedVideo> videos = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            videos.add(get(i));
+        }
+        return videos;
+    }
+
+}
@@ -0,0 +1,61 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import subbox.model.CachedVideo;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+interface VideoStorage {
+
+    @NotNull
+    VideoList store(@NotNull List<CachedVideo> videos);
+
+    @NotNull
+    default VideoList merge(@NotNull VideoList prefix, @NotNull List<CachedVideo> videos) {
+        VideoList mergedList = store(mergeSorted(prefix.toList(), videos));
+        prefix.release();
+        return mergedList;
+    }
+
+    @NotNull
+    Map<String, ?> getStats();
+
+    void destroy();
+
+    // Uploads playlists are ordered by position, which only roughly follows publishedAt, and a page token
+    // can shift by the time the next page is requested, repeating videos from the end of the previous page
+    @NotNull
+    static List<CachedVideo> mergeSorted(@NotNull List<CachedVideo> prefix, @NotNull List<CachedVideo> videos) {
+        Set<String> prefixIds = new HashSet<>();
+        for (CachedVideo video : prefix) {
+            prefixIds.add(video.getId());
+        }
+        List<CachedVideo> added = new ArrayList<>(videos.size());
+        for (CachedVideo video : videos) {
+            if (prefixIds.add(video.getId())) {
+                added.add(video);
+            }
+        }
+        added.sort(YouTubeService.DEFAULT_VIDEO_COMPARATOR);
+
+        List<CachedVideo> merged = new ArrayList<>(prefix.size() + added.size());
+        int i = 0;
+        int j = 0;
+        while (i < prefix.size() && j < added.size()) {
+            // prefix videos go first on ties, so positions already read stay where they were
+            if (YouTubeService.DEFAULT_VIDEO_COMPARATOR.compare(added.get(j), prefix.get(i)) < 0) {
+                merged.add(added.get(j++));
+            } else {
+                merged.add(prefix.get(i++));
+            }
+        }
+        merged.addAll(prefix.subList(i, prefix.size()));
+        merged.addAll(added.subList(j, added.size()));
+        return merged;
+    }
+
+}
@@ -0,0 +1,304 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.stream.Collectors.joining;
+import static subbox.util.Maps.orderedMapOf;
+
+@Service
+public class WebSubSubscriber {
+
+    @NotNull
+    private static final Logger log = LoggerFactory.getLogger(WebSubSubscriber.class);
+
+    @NotNull
+    private static final String TOPIC_PREFIX = "https://www.youtube.com/xml/feeds/videos.xml?channel_id=";
+    @NotNull
+    private static final String YT_NAMESPACE = "http://www.youtube.com/xml/schemas/2015";
+    @NotNull
+    private static final String CHANNEL_URI_MARKER = "/channel/";
+
+    private static boolean enabled;
+    private static URI hubUrl;
+    private static String callbackUrl;
+    private static String secret;
+    private static Duration lease;
+    private static Duration renewBefore;
+    private static Duration retryInterval;
+
+    @NotNull
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+    @NotNull
+    private final Set<String> wantedChannels = ConcurrentHashMap.newKeySet();
+    @NotNull
+    private final ConcurrentHashMap<String, Instant> leaseExpirations = new ConcurrentHashMap<>();
+    @NotNull
+    private final ConcurrentHashMap<String, Instant> subscribeRequests = new ConcurrentHashMap<>();
+
+    @Value("${subbox.websub.enabled}")
+    public void setEnabled(boolean enabled) {
+        WebSubSubscriber.enabled = enabled;
+    }
+
+    @Value("${subbox.websub.hub-url}")
+    public void setHubUrl(@NotNull String hubUrl) {
+        WebSubSubscriber.hubUrl = URI.create(hubUrl);
+    }
+
+    @Value("${subbox.websub.callback-url}")
+    public void setCallbackUrl(@NotNull String callbackUrl) {
+        WebSubSubscriber.callbackUrl = callbackUrl;
+    }
+
+    @Value("${subbox.websub.secret}")
+    public void setSecret(@NotNull String secret) {
+        WebSubSubscriber.secret = secret;
+    }
+
+    @Value("${subbox.websub.lease}")
+    public void setLease(@NotNull Duration lease) {
+        WebSubSubscriber.lease = lease;
+    }
+
+    @Value("${subbox.websub.renew-before}")
+    public void setRenewBefore(@NotNull Duration renewBefore) {
+        WebSubSubscriber.renewBefore = renewBefore;
+    }
+
+    @Value("${subbox.websub.retry-interval}")
+    public void setRetryInterval(@NotNull Duration retryInterval) {
+        WebSubSubscriber.retryInterval = retryInterval;
+    }
+
+    @PostConstruct
+    public void init() {
+        // notifications trigger playlist refreshes, so unsigned ones would let anyone spend the API quota
+        if (enabled && secret.isEmpty()) {
+            throw new IllegalStateException("subbox.websub.secret must be set when WebSub is enabled");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void subscribe(@NotNull String playlistId) {
+        String channelId = channelIdOf(playlistId);
+        if (!enabled || channelId == null || !wantedChannels.add(channelId)) {
+            return;
+        }
+        sendRequest("subscribe", channelId);
+    }
+
+    public void unsubscribe(@NotNull String playlistId) {
+        String channelId = channelIdOf(playlistId);
+        if (!enabled || channelId == null || !wantedChannels.remove(channelId)) {
+            return;
+        }
+        leaseExpirations.remove(channelId);
+        sendRequest("unsubscribe", channelId);
+    }
+
+    public void renewLeases(@NotNull Collection<String> residentPlaylistIds) {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        Instant renewalDeadline = now.plus(renewBefore);
+        Instant retryDeadline = now.minus(retryInterval);
+        for (String playlistId : residentPlaylistIds) {
+            String channelId = channelIdOf(playlistId);
+            if (channelId == null) {
+                continue;
+            }
+            Instant expiration = leaseExpirations.get(channelId);
+            // a subscription that failed or was never verified by the hub is requested again after the retry interval
+            boolean due = expiration != null
+                    ? expiration.isBefore(renewalDeadline)
+                    : subscribeRequests.getOrDefault(channelId, Instant.MIN).isBefore(retryDeadline);
+            if (wantedChannels.add(channelId) || due) {
+                sendRequest("subscribe", channelId);
+            }
+        }
+    }
+
+    public boolean isPushCovered(@NotNull String playlistId) {
+        String channelId = channelIdOf(playlistId);
+        if (channelId == null) {
+            return false;
+        }
+        Instant expiration = leaseExpirations.get(channelId);
+        return expiration != null && expiration.isAfter(Instant.now());
+    }
+
+    public boolean verifyIntent(@NotNull String mode, @NotNull String topic, @Nullable Long leaseSeconds) {
+        if (!enabled || !topic.startsWith(TOPIC_PREFIX)) {
+            return false;
+        }
+
+        String channelId = topic.substring(TOPIC_PREFIX.length());
+        boolean wanted = wantedChannels.contains(channelId);
+        if ("subscribe".equals(mode) && wanted) {
+            long seconds = leaseSeconds != null ? leaseSeconds : lease.getSeconds();
+            leaseExpirations.put(channelId, Instant.now().plusSeconds(seconds));
+            log.debug("WebSub subscription to channel \"{}\" verified for {}s", channelId, seconds);
+            return true;
+        }
+        if ("unsubscribe".equals(mode) && !wanted) {
+            leaseExpirations.remove(channelId);
+            log.debug("WebSub unsubscription from channel \"{}\" verified", channelId);
+            return true;
+        }
+        return false;
+    }
+
+    @NotNull
+    public Set<String> parseNotification(@NotNull String body, @Nullable String signature) {
+        Set<String> playlistIds = new LinkedHashSet<>();
+        if (!enabled) {
+            return playlistIds;
+        }
+        if (!isSignatureValid(body, signature)) {
+            log.warn("Ignoring WebSub notification with invalid signature");
+            return playlistIds;
+        }
+
+        try {
+            XMLInputFactory factory = XMLInputFactory.newFactory();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(body));
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamReader.START_ELEMENT) {
+                    continue;
+                }
+                String channelId = null;
+                if ("channelId".equals(reader.getLocalName()) && YT_NAMESPACE.equals(reader.getNamespaceURI())) {
+                    channelId = reader.getElementText().trim();
+                } else if ("uri".equals(reader.getLocalName())) {
+                    String uri = reader.getElementText().trim();
+                    int marker = uri.lastIndexOf(CHANNEL_URI_MARKER);
+                    channelId = marker >= 0 ? uri.substring(marker + CHANNEL_URI_MARKER.length()) : null;
+                }
+                String playlistId = channelId != null ? uploadsPlaylistIdOf(channelId) : null;
+                if (playlistId != null) {
+                    playlistIds.add(playlistId);
+                }
+            }
+            reader.close();
+        } catch (XMLStreamException e) {
+            log.warn("Could not parse WebSub notification", e);
+        }
+        return playlistIds;
+    }
+
+    private boolean isSignatureValid(@NotNull String body, @Nullable String signature) {
+        if (secret.isEmpty() || signature == null || !signature.startsWith("sha1=")) {
+            return false;
+        }
+
+        try {
+            Mac mac = Mac.getInstance("HmacSHA1");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+            byte[] expected = mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+            byte[] actual = hexToBytes(signature.substring("sha1=".length()));
+            return actual != null && MessageDigest.isEqual(expected, actual);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void sendRequest(@NotNull String mode, @NotNull String channelId) {
+        if ("subscribe".equals(mode)) {
+            subscribeRequests.put(channelId, Instant.now());
+        } else {
+            subscribeRequests.remove(channelId);
+        }
+        Map<String, String> form = orderedMapOf(
+                "hub.callback", callbackUrl,
+                "hub.mode", mode,
+                "hub.topic", TOPIC_PREFIX + channelId,
+                "hub.lease_seconds", String.valueOf(lease.getSeconds()),
+                "hub.secret", secret
+        );
+        String body = form.entrySet()
+                .stream()
+                .map(entry -> encode(entry.getKey()) + "=" + encode(entry.getValue()))
+                .collect(joining("&"));
+
+        HttpRequest request = HttpRequest.newBuilder(hubUrl)
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.warn("WebSub {} request for channel \"{}\" failed", mode, channelId, error);
+                    } else if (response.statusCode() / 100 != 2) {
+                        log.warn("WebSub {} request for channel \"{}\" rejected with status {}", mode, channelId, response.statusCode());
+                    }
+                });
+    }
+
+    @NotNull
+    private static String encode(@NotNull String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private static byte[] hexToBytes(@NotNull String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) (high << 4 | low);
+        }
+        return bytes;
+    }
+
+    @Nullable
+    private static String channelIdOf(@NotNull String uploadsPlaylistId) {
+        return uploadsPlaylistId.startsWith("UU") ? "UC" + uploadsPlaylistId.substring(2) : null;
+    }
+
+    @Nullable
+    private static String uploadsPlaylistIdOf(@NotNull String channelId) {
+        return channelId.startsWith("UC") ? "UU" + channelId.substring(2) : null;
+    }
+
+}
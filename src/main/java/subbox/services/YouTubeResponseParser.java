@@ -0,0 +1,259 @@
+package subbox.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import subbox.model.CachedVideo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class YouTubeResponseParser {
+
+    @NotNull
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private YouTubeResponseParser() {
+    }
+
+    @FunctionalInterface
+    interface Parser<R> {
+        @NotNull
+        R parse(@NotNull InputStream content) throws IOException;
+    }
+
+    static class VideoIdPage {
+        @NotNull
+        final List<String> videoIds;
+        @NotNull
+        final List<String> titles;
+        @Nullable
+        final String nextPageToken;
+
+        VideoIdPage(@NotNull List<String> videoIds, @NotNull List<String> titles, @Nullable String nextPageToken) {
+            this.videoIds = videoIds;
+            this.titles = titles;
+            this.nextPageToken = nextPageToken;
+        }
+    }
+
+    @NotNull
+    static VideoIdPage parsePlaylistItems(@NotNull InputStream content) throws IOException {
+        List<String> videoIds = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        String nextPageToken = null;
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("nextPageToken".equals(field)) {
+                    nextPageToken = parser.getValueAsString();
+                } else if ("items".equals(field)) {
+                    while (nextItem(parser)) {
+                        String videoId = null;
+                        String title = null;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String itemField = parser.getCurrentName();
+                            parser.nextToken();
+                            if (!"snippet".equals(itemField)) {
+                                parser.skipChildren();
+                                continue;
+                            }
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String snippetField = parser.getCurrentName();
+                                parser.nextToken();
+                                if ("title".equals(snippetField)) {
+                                    title = parser.getValueAsString();
+                                } else if ("resourceId".equals(snippetField)) {
+                                    videoId = parseStringField(parser, "videoId");
+                                } else {
+                                    parser.skipChildren();
+                                }
+                            }
+                        }
+                        if (videoId != null) {
+                            videoIds.add(videoId);
+                            titles.add(title);
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new VideoIdPage(videoIds, titles, nextPageToken);
+    }
+
+    @NotNull
+    static List<CachedVideo> parseVideos(@NotNull InputStream content) throws IOException {
+        List<CachedVideo> videos = new ArrayList<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (!"items".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (nextItem(parser)) {
+                    CachedVideo video = parseVideo(parser);
+                    if (video != null) {
+                        videos.add(video);
+                    }
+                }
+            }
+        }
+        return videos;
+    }
+
+    @NotNull
+    static Map<String, String> parsePlaylistETags(@NotNull InputStream content) throws IOException {
+        Map<String, String> eTags = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if (!"items".equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (nextItem(parser)) {
+                    String id = null;
+                    String eTag = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String itemField = parser.getCurrentName();
+                        parser.nextToken();
+                        if ("id".equals(itemField)) {
+                            id = parser.getValueAsString();
+                        } else if ("etag".equals(itemField)) {
+                            eTag = parser.getValueAsString();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    if (id != null && eTag != null) {
+                        eTags.put(id, eTag);
+                    }
+                }
+            }
+        }
+        return eTags;
+    }
+
+    @Nullable
+    private static CachedVideo parseVideo(@NotNull JsonParser parser) throws IOException {
+        String id = null;
+        String channelId = null;
+        String publishedAt = null;
+        String title = null;
+        String thumbnailUrl = null;
+        int thumbnailWidth = 0;
+        int thumbnailHeight = 0;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                id = parser.getValueAsString();
+            } else if ("snippet".equals(field)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String snippetField = parser.getCurrentName();
+                    parser.nextToken();
+                    switch (snippetField) {
+                        case "channelId":
+                            channelId = parser.getValueAsString();
+                            break;
+                        case "publishedAt":
+                            publishedAt = parser.getValueAsString();
+                            break;
+                        case "title":
+                            title = parser.getValueAsString();
+                            break;
+                        case "thumbnails":
+                            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                String size = parser.getCurrentName();
+                                parser.nextToken();
+                                if (!"default".equals(size)) {
+                                    parser.skipChildren();
+                                    continue;
+                                }
+                                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                                    String thumbnailField = parser.getCurrentName();
+                                    parser.nextToken();
+                                    if ("url".equals(thumbnailField)) {
+                                        thumbnailUrl = parser.getValueAsString();
+                                    } else if ("width".equals(thumbnailField)) {
+                                        thumbnailWidth = parser.getValueAsInt();
+                                    } else if ("height".equals(thumbnailField)) {
+                                        thumbnailHeight = parser.getValueAsInt();
+                                    } else {
+                                        parser.skipChildren();
+                                    }
+                                }
+                            }
+                            break;
+                        default:
+                            parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        // incomplete videos are skipped like the private and deleted ones videos().list leaves out
+        if (id == null || channelId == null || publishedAt == null || title == null) {
+            return null;
+        }
+        long publishedAtMillis;
+        try {
+            publishedAtMillis = OffsetDateTime.parse(publishedAt).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new JsonParseException(parser, "Malformed publishedAt of video " + id + ": " + publishedAt, e);
+        }
+        return new CachedVideo(id, channelId, publishedAtMillis, title, thumbnailUrl, thumbnailWidth, thumbnailHeight);
+    }
+
+    @Nullable
+    private static String parseStringField(@NotNull JsonParser parser, @NotNull String name) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (name.equals(field)) {
+                value = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    private static boolean nextItem(@NotNull JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.END_ARRAY) {
+            return false;
+        }
+        expect(parser, token, JsonToken.START_OBJECT);
+        return true;
+    }
+
+    private static void expect(@NotNull JsonParser parser, @Nullable JsonToken actual, @NotNull JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Malformed response: expected " + expected + " but got " + actual);
+        }
+    }
+
+}
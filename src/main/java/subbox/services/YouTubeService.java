@@ -1,12 +1,14 @@
 package subbox.services;
 
 import com.google.api.services.youtube.model.Channel;
-import com.google.api.services.youtube.model.Playlist;
-import com.google.api.services.youtube.model.Video;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
 
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static java.util.Comparator.comparingLong;
@@ -14,8 +16,7 @@ import static java.util.Comparator.comparingLong;
 public interface YouTubeService {
 
     @NotNull
-    Comparator<Video> DEFAULT_VIDEO_COMPARATOR = comparingLong((Video video) ->
-            video.getSnippet().getPublishedAt().getValue()).reversed();
+    Comparator<CachedVideo> DEFAULT_VIDEO_COMPARATOR = comparingLong(CachedVideo::getPublishedAt).reversed();
 
     @NotNull
     Optional<Channel> getChannel(@NotNull String channelId);
@@ -24,9 +25,9 @@ public interface YouTubeService {
     List<Channel> getChannels(@NotNull List<String> channelIds);
 
     @NotNull
-    List<Playlist> getPlaylists(@NotNull List<String> playlistIds);
+    Map<String, String> getPlaylistETags(@NotNull List<String> playlistIds);
 
     @NotNull
-    List<Video> getVideos(@NotNull String playlistId);
+    PlaylistPage getVideos(@NotNull String playlistId, @Nullable String pageToken, long maxVideos);
 
 }
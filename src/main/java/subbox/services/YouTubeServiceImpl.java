@@ -1,33 +1,62 @@
 package subbox.services;
 
-import com.google.api.client.googleapis.javanet.GoogleNetHttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseException;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.youtube.YouTube;
-import com.google.api.services.youtube.YouTubeRequestInitializer;
+import com.google.api.services.youtube.YouTubeRequest;
 import com.google.api.services.youtube.model.*;
+import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import subbox.http.JavaNetHttpTransport;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.util.ApiKeyPool;
+import subbox.util.CircuitBreaker;
 import subbox.util.DurationFormatter;
 import subbox.util.Exceptions;
+import subbox.util.MoreExecutors;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.security.GeneralSecurityException;
+import java.io.InputStream;
 import java.time.Duration;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import java.util.stream.Collector;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 
 @Service
 public class YouTubeServiceImpl implements YouTubeService {
@@ -38,36 +67,57 @@ public class YouTubeServiceImpl implements YouTubeService {
     private static final int MAX_RESULTS = 50;
     private static final long MAX_RESULTS_L = (long) MAX_RESULTS;
     @NotNull
-    private static final NetHttpTransport HTTP_TRANSPORT;
-
-    static {
-        try {
-            HTTP_TRANSPORT = GoogleNetHttpTransport.newTrustedTransport();
-        } catch (GeneralSecurityException | IOException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    private static final JacksonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
     @NotNull
-    private static final JacksonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+    private static final ZoneId QUOTA_RESET_ZONE = ZoneId.of("America/Los_Angeles");
+    @NotNull
+    private static final Set<String> QUOTA_EXCEEDED_REASONS = Set.of("quotaExceeded", "dailyLimitExceeded");
+    @NotNull
+    private static final Set<String> RATE_LIMITED_REASONS = Set.of("rateLimitExceeded", "userRateLimitExceeded");
 
-    private static String apiKey;
+    private static List<String> apiKeys;
+    private static Duration apiKeyBackoff;
+    private static Duration apiKeyMaxBackoff;
     private static String appName;
-    private static long videosToDownload;
+    private static int httpThreads;
+    private static int maxConcurrentRequests;
+    private static Duration connectTimeout;
+    private static boolean streamingParser;
+    private static Duration snippetBatchLinger;
+    private static Duration snippetBatchTimeout;
+    private static long snippetCacheMaximumSize;
+    private static Duration snippetCacheExpireAfterWrite;
+    private static Duration missingSnippetExpireAfterWrite;
+    private static int breakerFailureThreshold;
+    private static Duration breakerOpenDuration;
+    private static int breakerHalfOpenProbes;
 
+    private ExecutorService httpExecutor;
+    private ScheduledExecutorService batchScheduler;
+    private ApiKeyPool apiKeyPool;
+    private YouTube youTube;
+    private SnippetBatcher snippetBatcher;
+    private SnippetCache snippetCache;
     @NotNull
-    private final ThreadLocal<YouTube> youTube = ThreadLocal.withInitial(
-            () -> {
-                log.info("Initializing thread-local YouTube service");
-                return new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, null)
-                        .setYouTubeRequestInitializer(new YouTubeRequestInitializer(apiKey))
-                        .setApplicationName(appName)
-                        .build();
-            });
+    private final ConcurrentHashMap<Class<?>, CircuitBreaker> breakers = new ConcurrentHashMap<>();
 
     @Value("${subbox.api.key}")
-    public void setApiKey(@NotNull String apiKey) {
-        YouTubeServiceImpl.apiKey = apiKey;
+    public void setApiKeys(@NotNull String[] apiKeys) {
+        YouTubeServiceImpl.apiKeys = Arrays.stream(apiKeys)
+                .map(String::trim)
+                .filter(key -> !key.isEmpty())
+                .collect(toList());
+    }
+
+    @Value("${subbox.api.key-backoff}")
+    public void setApiKeyBackoff(@NotNull Duration apiKeyBackoff) {
+        YouTubeServiceImpl.apiKeyBackoff = apiKeyBackoff;
+    }
+
+    @Value("${subbox.api.key-max-backoff}")
+    public void setApiKeyMaxBackoff(@NotNull Duration apiKeyMaxBackoff) {
+        YouTubeServiceImpl.apiKeyMaxBackoff = apiKeyMaxBackoff;
     }
 
     @Value("${subbox.app.name}")
@@ -75,28 +125,224 @@ public class YouTubeServiceImpl implements YouTubeService {
         YouTubeServiceImpl.appName = appName;
     }
 
-    @Value("${subbox.cache.videos-per-playlist}")
-    public void setVideosToDownload(long videosToDownload) {
-        YouTubeServiceImpl.videosToDownload = videosToDownload;
+    @Value("${subbox.http.threads}")
+    public void setHttpThreads(int httpThreads) {
+        YouTubeServiceImpl.httpThreads = httpThreads;
+    }
+
+    @Value("${subbox.http.max-concurrent-requests}")
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        YouTubeServiceImpl.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    @Value("${subbox.http.connect-timeout}")
+    public void setConnectTimeout(@NotNull Duration connectTimeout) {
+        YouTubeServiceImpl.connectTimeout = connectTimeout;
+    }
+
+    @Value("${subbox.api.streaming-parser}")
+    public void setStreamingParser(boolean streamingParser) {
+        YouTubeServiceImpl.streamingParser = streamingParser;
+    }
+
+    @Value("${subbox.api.snippet-batch-timeout}")
+    public void setSnippetBatchTimeout(@NotNull Duration snippetBatchTimeout) {
+        YouTubeServiceImpl.snippetBatchTimeout = snippetBatchTimeout;
+    }
+
+    @Value("${subbox.api.snippet-batch-linger}")
+    public void setSnippetBatchLinger(@NotNull Duration snippetBatchLinger) {
+        YouTubeServiceImpl.snippetBatchLinger = snippetBatchLinger;
+    }
+
+    @Value("${subbox.cache.snippets.maximum-size}")
+    public void setSnippetCacheMaximumSize(long snippetCacheMaximumSize) {
+        YouTubeServiceImpl.snippetCacheMaximumSize = snippetCacheMaximumSize;
+    }
+
+    @Value("${subbox.cache.snippets.expire-after-write}")
+    public void setSnippetCacheExpireAfterWrite(@NotNull Duration snippetCacheExpireAfterWrite) {
+        YouTubeServiceImpl.snippetCacheExpireAfterWrite = snippetCacheExpireAfterWrite;
+    }
+
+    @Value("${subbox.cache.snippets.missing-expire-after-write}")
+    public void setMissingSnippetExpireAfterWrite(@NotNull Duration missingSnippetExpireAfterWrite) {
+        YouTubeServiceImpl.missingSnippetExpireAfterWrite = missingSnippetExpireAfterWrite;
+    }
+
+    @Value("${subbox.api.circuit-breaker.failure-threshold}")
+    public void setBreakerFailureThreshold(int breakerFailureThreshold) {
+        YouTubeServiceImpl.breakerFailureThreshold = breakerFailureThreshold;
+    }
+
+    @Value("${subbox.api.circuit-breaker.open-duration}")
+    public void setBreakerOpenDuration(@NotNull Duration breakerOpenDuration) {
+        YouTubeServiceImpl.breakerOpenDuration = breakerOpenDuration;
+    }
+
+    @Value("${subbox.api.circuit-breaker.half-open-probes}")
+    public void setBreakerHalfOpenProbes(int breakerHalfOpenProbes) {
+        YouTubeServiceImpl.breakerHalfOpenProbes = breakerHalfOpenProbes;
+    }
+
+    @PostConstruct
+    public void init() {
+        log.info("Initializing HTTP request thread pool");
+        httpExecutor = MoreExecutors.newBoundedCachedThreadPool(httpThreads);
+
+        log.info("Initializing API key pool of {} keys", apiKeys.size());
+        apiKeyPool = new ApiKeyPool(apiKeys, apiKeyBackoff, apiKeyMaxBackoff);
+
+        log.info("Initializing shared YouTube service");
+        JavaNetHttpTransport transport = new JavaNetHttpTransport(connectTimeout, maxConcurrentRequests);
+        youTube = new YouTube.Builder(transport, JSON_FACTORY, null)
+                .setApplicationName(appName)
+                .build();
+
+        log.info("Initializing snippet batcher");
+        batchScheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduleQuotaReset();
+        snippetBatcher = new SnippetBatcher(MAX_RESULTS, snippetBatchLinger, this::fetchSnippets, batchScheduler);
+
+        log.info("Initializing snippet cache");
+        snippetCache = new SnippetCache(snippetCacheMaximumSize, snippetCacheExpireAfterWrite, missingSnippetExpireAfterWrite);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        log.info("Shutting down snippet batcher");
+        batchScheduler.shutdown();
+        log.info("Shutting down HTTP request thread pool");
+        httpExecutor.shutdown();
+    }
+
+    @NotNull
+    public Map<String, Map<String, ?>> getApiKeyUsage() {
+        return apiKeyPool.getUsage();
     }
 
     @NotNull
     private YouTube getYoutube() {
-        return youTube.get();
+        return youTube;
+    }
+
+    private void scheduleQuotaReset() {
+        batchScheduler.schedule(() -> {
+            log.info("Resetting API key quota usage");
+            apiKeyPool.resetUsage();
+            scheduleQuotaReset();
+        }, untilQuotaReset().toNanos(), NANOSECONDS);
+    }
+
+    @NotNull
+    private static Duration untilQuotaReset() {
+        ZonedDateTime now = ZonedDateTime.now(QUOTA_RESET_ZONE);
+        ZonedDateTime reset = now.toLocalDate().plusDays(1).atStartOfDay(QUOTA_RESET_ZONE);
+        return Duration.between(now, reset);
+    }
+
+    private <R> R withApiKey(@NotNull YouTubeRequest<?> request, @NotNull Callable<R> call) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            String key = apiKeyPool.acquire();
+            request.setKey(key);
+            boolean succeeded = false;
+            try {
+                R result = call.call();
+                succeeded = true;
+                return result;
+            } catch (GoogleJsonResponseException e) {
+                if (!suspendLimitedKey(key, e) || attempt >= apiKeyPool.size()) {
+                    throw e;
+                }
+                log.debug("Retrying {} with another API key", request.getClass().getSimpleName());
+            } finally {
+                apiKeyPool.release(key, succeeded);
+            }
+        }
+    }
+
+    private boolean suspendLimitedKey(@NotNull String key, @NotNull GoogleJsonResponseException e) {
+        GoogleJsonError details = e.getDetails();
+        if (e.getStatusCode() != 403 || details == null || details.getErrors() == null) {
+            return false;
+        }
+
+        for (GoogleJsonError.ErrorInfo error : details.getErrors()) {
+            if (QUOTA_EXCEEDED_REASONS.contains(error.getReason())) {
+                Duration untilReset = untilQuotaReset();
+                log.warn("API key ran out of quota, suspending it for {}", DurationFormatter.format(untilReset));
+                apiKeyPool.suspend(key, untilReset);
+                return true;
+            }
+            if (RATE_LIMITED_REASONS.contains(error.getReason())) {
+                log.warn("API key was rate limited, backing off");
+                apiKeyPool.backOff(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @NotNull
+    private CircuitBreaker breakerFor(@NotNull AbstractGoogleClientRequest<?> request) {
+        return breakers.computeIfAbsent(request.getClass(), requestClass -> new CircuitBreaker(
+                StringUtils.uncapitalize(requestClass.getEnclosingClass().getSimpleName()) + "." +
+                        StringUtils.uncapitalize(requestClass.getSimpleName()),
+                breakerFailureThreshold, breakerOpenDuration, breakerHalfOpenProbes, YouTubeServiceImpl::isBreakerFailure));
+    }
+
+    // only an unhealthy API opens the breaker; rejected requests, exhausted quota and bad responses would fail again anyway
+    static boolean isBreakerFailure(@NotNull Throwable e) {
+        if (e instanceof HttpResponseException) {
+            return ((HttpResponseException) e).getStatusCode() / 100 == 5;
+        }
+        if (e instanceof JsonProcessingException) {
+            return false;
+        }
+        return e instanceof IOException || e instanceof TimeoutException;
+    }
+
+    private <T> T execute(@NotNull YouTubeRequest<T> request) {
+        return breakerFor(request).call(() -> withApiKey(request, request::execute));
+    }
+
+    @NotNull
+    private <T, R> R execute(@NotNull YouTubeRequest<T> request,
+                             @NotNull YouTubeResponseParser.Parser<R> parser,
+                             @NotNull Function<? super T, ? extends R> converter) {
+        return breakerFor(request).call(() -> withApiKey(request, () -> {
+            if (!streamingParser) {
+                return converter.apply(request.execute());
+            }
+
+            HttpResponse response = request.executeUnparsed();
+            try (InputStream content = response.getContent()) {
+                return parser.parse(content);
+            } finally {
+                response.disconnect();
+            }
+        }));
+    }
+
+    @NotNull
+    private <T, R> CompletableFuture<R> executeAsync(@NotNull YouTubeRequest<T> request,
+                                                     @NotNull YouTubeResponseParser.Parser<R> parser,
+                                                     @NotNull Function<? super T, ? extends R> converter) {
+        return CompletableFuture.supplyAsync(() -> execute(request, parser, converter), httpExecutor);
     }
 
     @NotNull
     @Override
     public Optional<Channel> getChannel(@NotNull String channelId) {
-        return Exceptions.wrapCheckedException(() -> getYoutube()
+        YouTube.Channels.List request = Exceptions.wrapCheckedException(() -> getYoutube()
                 .channels()
                 .list("contentDetails")
                 .setId(channelId)
-                .setMaxResults(1L)
-                .execute()
+                .setMaxResults(1L));
+        return execute(request)
                 .getItems()
                 .stream()
-                .findFirst());
+                .findFirst();
     }
 
     @NotNull
@@ -108,60 +354,57 @@ public class YouTubeServiceImpl implements YouTubeService {
                         .list("contentDetails")
                         .setId(String.join(",", batch))
                         .setMaxResults((long) batch.size())
-                        .setFields("items(id,contentDetails/relatedPlaylists/uploads)")
-                        .execute()
-                        .getItems()))
+                        .setFields("items(id,contentDetails/relatedPlaylists/uploads)")))
+                .map(request -> execute(request).getItems())
                 .collect(joiningLists());
     }
 
     @NotNull
     @Override
-    public List<Playlist> getPlaylists(@NotNull List<String> playlistIds) {
-        return batches(playlistIds)
+    public Map<String, String> getPlaylistETags(@NotNull List<String> playlistIds) {
+        Map<String, String> eTags = new HashMap<>();
+        batches(playlistIds)
                 .map(batch -> Exceptions.wrapCheckedException(() -> getYoutube()
                         .playlists()
                         .list("id")
                         .setId(String.join(",", batch))
                         .setMaxResults((long) batch.size())
-                        .setFields("items(id,etag)")
-                        .execute()
-                        .getItems()))
-                .collect(joiningLists());
+                        .setFields("items(id,etag)")))
+                .map(request -> execute(request, YouTubeResponseParser::parsePlaylistETags, YouTubeServiceImpl::toETags))
+                .forEach(eTags::putAll);
+        return eTags;
     }
 
     @NotNull
-    private PlaylistItemListResponse getPlaylistItems(@NotNull String playlistId, @Nullable String pageToken, long maxResults) {
-        return Exceptions.wrapCheckedException(() -> getYoutube()
+    private YouTubeResponseParser.VideoIdPage getPlaylistItems(@NotNull String playlistId, @Nullable String pageToken, long maxResults) {
+        YouTube.PlaylistItems.List request = Exceptions.wrapCheckedException(() -> getYoutube()
                 .playlistItems()
-                .list("contentDetails")
+                .list("snippet")
                 .setPlaylistId(playlistId)
                 .setPageToken(pageToken)
                 .setMaxResults(maxResults)
-                .setFields("nextPageToken,items/contentDetails/videoId")
-                .execute());
+                .setFields("nextPageToken,items/snippet(title,resourceId/videoId)"));
+        return execute(request, YouTubeResponseParser::parsePlaylistItems, YouTubeServiceImpl::toVideoIdPage);
     }
 
     @NotNull
     @Override
-    public List<Video> getVideos(@NotNull String playlistId) {
-        log.debug("Downloading playlist \"{}\"", playlistId);
+    public PlaylistPage getVideos(@NotNull String playlistId, @Nullable String pageToken, long maxVideos) {
+        log.debug("Downloading up to {} videos of playlist \"{}\"", maxVideos, playlistId);
         log.debug("Fetching video ids for playlist \"{}\"", playlistId);
         ZonedDateTime start = ZonedDateTime.now();
 
         List<String> videoIds = new ArrayList<>();
-        String nextPageToken = null;
-        long remaining = videosToDownload > 0 ? videosToDownload : Long.MAX_VALUE;
+        List<String> titles = new ArrayList<>();
+        String nextPageToken = pageToken;
+        long remaining = maxVideos;
         while (remaining > 0) {
-            PlaylistItemListResponse response = getPlaylistItems(playlistId, nextPageToken, Math.min(MAX_RESULTS_L, remaining));
-            nextPageToken = response.getNextPageToken();
-            List<String> videoIdBatch = response.getItems()
-                    .stream()
-                    .map(PlaylistItem::getContentDetails)
-                    .map(PlaylistItemContentDetails::getVideoId)
-                    .collect(toList());
+            YouTubeResponseParser.VideoIdPage page = getPlaylistItems(playlistId, nextPageToken, Math.min(MAX_RESULTS_L, remaining));
+            nextPageToken = page.nextPageToken;
 
-            remaining -= videoIdBatch.size();
-            videoIds.addAll(videoIdBatch);
+            remaining -= page.videoIds.size();
+            videoIds.addAll(page.videoIds);
+            titles.addAll(page.titles);
 
             if (nextPageToken == null) {
                 break;
@@ -172,21 +415,99 @@ public class YouTubeServiceImpl implements YouTubeService {
         log.debug("Downloading videos for playlist \"{}\"", playlistId);
         ZonedDateTime startDownload = ZonedDateTime.now();
 
-        List<Video> downloadedVideos = batches(videoIds)
-                .map(batch -> Exceptions.wrapCheckedException(() -> getYoutube()
-                        .videos()
-                        .list("snippet")
-                        .setId(String.join(",", batch))
-                        .setMaxResults((long) batch.size())
-                        .setFields("items(id,snippet(channelId,publishedAt,thumbnails/default,title))")
-                        .execute()
-                        .getItems()))
-                .collect(joiningLists());
+        List<CachedVideo> downloadedVideos = new ArrayList<>(videoIds.size());
+        List<String> missingVideoIds = new ArrayList<>();
+        List<String> missingTitles = new ArrayList<>();
+        for (int i = 0; i < videoIds.size(); i++) {
+            if (snippetCache.isMissing(videoIds.get(i), titles.get(i))) {
+                continue;
+            }
+            CachedVideo cachedVideo = snippetCache.get(videoIds.get(i), titles.get(i));
+            if (cachedVideo != null) {
+                downloadedVideos.add(cachedVideo);
+            } else {
+                missingVideoIds.add(videoIds.get(i));
+                missingTitles.add(titles.get(i));
+            }
+        }
+
+        if (!missingVideoIds.isEmpty()) {
+            List<CachedVideo> fetchedVideos = snippetBatcher.fetch(missingVideoIds)
+                    .orTimeout(snippetBatchTimeout.toNanos(), NANOSECONDS)
+                    .join();
+            snippetCache.putAll(missingVideoIds, missingTitles, fetchedVideos);
+            downloadedVideos.addAll(fetchedVideos);
+        }
         downloadedVideos.sort(YouTubeService.DEFAULT_VIDEO_COMPARATOR);
 
-        log.debug("Downloaded videos for playlist \"{}\", took {}", playlistId, DurationFormatter.format(Duration.between(startDownload, ZonedDateTime.now())));
+        log.debug("Downloaded {} of {} videos for playlist \"{}\", took {}", missingVideoIds.size(), videoIds.size(), playlistId, DurationFormatter.format(Duration.between(startDownload, ZonedDateTime.now())));
         log.debug("Downloaded playlist \"{}\", took {}", playlistId, DurationFormatter.format(Duration.between(start, ZonedDateTime.now())));
-        return downloadedVideos;
+        return new PlaylistPage(downloadedVideos, nextPageToken);
+    }
+
+    @NotNull
+    private CompletableFuture<List<CachedVideo>> fetchSnippets(@NotNull List<String> videoIds) {
+        YouTube.Videos.List request = Exceptions.wrapCheckedException(() -> getYoutube()
+                .videos()
+                .list("snippet")
+                .setId(String.join(",", videoIds))
+                .setMaxResults((long) videoIds.size())
+                .setFields("items(id,snippet(channelId,publishedAt,thumbnails/default,title))"));
+        return executeAsync(request, YouTubeResponseParser::parseVideos, YouTubeServiceImpl::toCachedVideos);
+    }
+
+    @NotNull
+    private static Map<String, String> toETags(@NotNull PlaylistListResponse response) {
+        return response.getItems()
+                .stream()
+                .collect(toMap(Playlist::getId, Playlist::getEtag));
+    }
+
+    // the model converters skip the same incomplete items as YouTubeResponseParser
+    @NotNull
+    static YouTubeResponseParser.VideoIdPage toVideoIdPage(@NotNull PlaylistItemListResponse response) {
+        List<String> videoIds = new ArrayList<>();
+        List<String> titles = new ArrayList<>();
+        if (response.getItems() != null) {
+            for (PlaylistItem item : response.getItems()) {
+                PlaylistItemSnippet snippet = item.getSnippet();
+                if (snippet != null && snippet.getResourceId() != null && snippet.getResourceId().getVideoId() != null) {
+                    videoIds.add(snippet.getResourceId().getVideoId());
+                    titles.add(snippet.getTitle());
+                }
+            }
+        }
+        return new YouTubeResponseParser.VideoIdPage(videoIds, titles, response.getNextPageToken());
+    }
+
+    @NotNull
+    static List<CachedVideo> toCachedVideos(@NotNull VideoListResponse response) {
+        if (response.getItems() == null) {
+            return new ArrayList<>();
+        }
+        return response.getItems()
+                .stream()
+                .map(YouTubeServiceImpl::toCachedVideo)
+                .filter(Objects::nonNull)
+                .collect(toList());
+    }
+
+    @Nullable
+    private static CachedVideo toCachedVideo(@NotNull Video video) {
+        VideoSnippet snippet = video.getSnippet();
+        if (video.getId() == null || snippet == null || snippet.getChannelId() == null || snippet.getPublishedAt() == null
+                || snippet.getTitle() == null) {
+            return null;
+        }
+        Thumbnail thumbnail = snippet.getThumbnails() != null ? snippet.getThumbnails().getDefault() : null;
+        return new CachedVideo(
+                video.getId(),
+                snippet.getChannelId(),
+                snippet.getPublishedAt().getValue(),
+                snippet.getTitle(),
+                thumbnail != null ? thumbnail.getUrl() : null,
+                thumbnail != null && thumbnail.getWidth() != null ? thumbnail.getWidth().intValue() : 0,
+                thumbnail != null && thumbnail.getHeight() != null ? thumbnail.getHeight().intValue() : 0);
     }
 
     @NotNull
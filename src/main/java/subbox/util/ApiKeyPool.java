@@ -0,0 +1,160 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+import static java.util.stream.Collectors.toList;
+
+public class ApiKeyPool {
+
+    @NotNull
+    private final List<KeyState> keys;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    @NotNull
+    private final LongSupplier nanoClock;
+
+    public ApiKeyPool(@NotNull List<String> keys, @NotNull Duration initialBackoff, @NotNull Duration maxBackoff) {
+        this(keys, initialBackoff, maxBackoff, System::nanoTime);
+    }
+
+    ApiKeyPool(@NotNull List<String> keys,
+               @NotNull Duration initialBackoff,
+               @NotNull Duration maxBackoff,
+               @NotNull LongSupplier nanoClock) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("at least one API key is required");
+        }
+
+        this.keys = keys.stream()
+                .map(KeyState::new)
+                .collect(toList());
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    @NotNull
+    public synchronized String acquire() {
+        long now = nanoClock.getAsLong();
+        KeyState leastLoaded = null;
+        for (KeyState key : keys) {
+            if (key.isSuspended(now)) {
+                continue;
+            }
+            if (leastLoaded == null ||
+                    key.units < leastLoaded.units ||
+                    key.units == leastLoaded.units && key.inFlight < leastLoaded.inFlight) {
+                leastLoaded = key;
+            }
+        }
+
+        if (leastLoaded == null) {
+            throw new ExhaustedException();
+        }
+
+        leastLoaded.inFlight++;
+        leastLoaded.units++;
+        leastLoaded.totalUnits++;
+        return leastLoaded.key;
+    }
+
+    public synchronized void release(@NotNull String key, boolean succeeded) {
+        KeyState state = find(key);
+        state.inFlight--;
+        if (succeeded) {
+            state.consecutiveBackoffs = 0;
+        }
+    }
+
+    public synchronized void backOff(@NotNull String key) {
+        KeyState state = find(key);
+        long backoff = Math.min(initialBackoffNanos << Math.min(state.consecutiveBackoffs, 30), maxBackoffNanos);
+        state.consecutiveBackoffs++;
+        suspend(state, backoff);
+    }
+
+    public synchronized void suspend(@NotNull String key, @NotNull Duration duration) {
+        suspend(find(key), duration.toNanos());
+    }
+
+    public synchronized void resetUsage() {
+        for (KeyState key : keys) {
+            key.units = 0;
+            key.suspendedUntil = null;
+        }
+    }
+
+    @NotNull
+    public synchronized Map<String, Map<String, ?>> getUsage() {
+        long now = nanoClock.getAsLong();
+        Map<String, Map<String, ?>> usage = new LinkedHashMap<>();
+        for (KeyState key : keys) {
+            usage.put(mask(key.key), Maps.orderedMapOf(
+                    "units", key.units,
+                    "totalUnits", key.totalUnits,
+                    "inFlight", key.inFlight,
+                    "suspendedSeconds", key.isSuspended(now) ? Duration.ofNanos(key.suspendedUntil - now).toSeconds() : 0
+            ));
+        }
+        return usage;
+    }
+
+    private void suspend(@NotNull KeyState state, long nanos) {
+        long until = nanoClock.getAsLong() + nanos;
+        if (state.suspendedUntil == null || until - state.suspendedUntil > 0) {
+            state.suspendedUntil = until;
+        }
+    }
+
+    @NotNull
+    private KeyState find(@NotNull String key) {
+        for (KeyState state : keys) {
+            if (state.key.equals(key)) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("unknown API key");
+    }
+
+    @NotNull
+    private static String mask(@NotNull String key) {
+        return key.length() <= 8 ? "****" : key.substring(0, 4) + "****" + key.substring(key.length() - 4);
+    }
+
+    private static class KeyState {
+        @NotNull
+        private final String key;
+        private int inFlight;
+        private long units;
+        private long totalUnits;
+        private int consecutiveBackoffs;
+        @Nullable
+        private Long suspendedUntil;
+
+        KeyState(@NotNull String key) {
+            this.key = key;
+        }
+
+        boolean isSuspended(long now) {
+            return suspendedUntil != null && suspendedUntil - now > 0;
+        }
+    }
+
+    public static class ExhaustedException extends RuntimeException {
+        ExhaustedException() {
+            super("All API keys are rate limited or out of quota");
+        }
+    }
+
+}
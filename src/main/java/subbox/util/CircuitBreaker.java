@@ -0,0 +1,138 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @NotNull
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    @NotNull
+    private final Predicate<Throwable> isFailure;
+    @NotNull
+    private final LongSupplier nanoClock;
+
+    @NotNull
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private int successfulProbes;
+    private long openedAt;
+
+    public CircuitBreaker(@NotNull String name, int failureThreshold, @NotNull Duration openDuration, int halfOpenProbes) {
+        this(name, failureThreshold, openDuration, halfOpenProbes, e -> true);
+    }
+
+    // exceptions rejected by isFailure, e.g. bad requests, are passed through without affecting the state
+    public CircuitBreaker(@NotNull String name,
+                          int failureThreshold,
+                          @NotNull Duration openDuration,
+                          int halfOpenProbes,
+                          @NotNull Predicate<Throwable> isFailure) {
+        this(name, failureThreshold, openDuration, halfOpenProbes, isFailure, System::nanoTime);
+    }
+
+    CircuitBreaker(@NotNull String name,
+                   int failureThreshold,
+                   @NotNull Duration openDuration,
+                   int halfOpenProbes,
+                   @NotNull Predicate<Throwable> isFailure,
+                   @NotNull LongSupplier nanoClock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = halfOpenProbes;
+        this.isFailure = isFailure;
+        this.nanoClock = nanoClock;
+    }
+
+    public <T> T call(@NotNull Callable<T> callable) {
+        acquire();
+        T result;
+        try {
+            result = Exceptions.wrapCheckedException(callable);
+        } catch (RuntimeException | Error e) {
+            Throwable cause = e instanceof Exceptions.CheckedExceptionWrapper ? e.getCause() : e;
+            if (isFailure.test(cause)) {
+                onFailure();
+            } else {
+                onIgnored();
+            }
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    @NotNull
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    private synchronized void acquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                throw new OpenException(name);
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            successfulProbes = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + successfulProbes >= halfOpenProbes) {
+                throw new OpenException(name);
+            }
+            probesInFlight++;
+        }
+    }
+
+    private synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+            if (++successfulProbes >= halfOpenProbes) {
+                state = State.CLOSED;
+            }
+        }
+    }
+
+    private synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight--;
+        }
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            consecutiveFailures = 0;
+        }
+    }
+
+    public static class OpenException extends RuntimeException {
+        OpenException(@NotNull String name) {
+            super("Circuit breaker \"" + name + "\" is open");
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class CompositeFuture<K, V> implements Future<List<V>> {
+
+    public static final class Partial<K, V> {
+        @NotNull
+        private final List<V> values;
+        @NotNull
+        private final List<K> keys;
+        @NotNull
+        private final List<K> missingKeys;
+
+        Partial(@NotNull List<V> values, @NotNull List<K> keys, @NotNull List<K> missingKeys) {
+            this.values = values;
+            this.keys = keys;
+            this.missingKeys = missingKeys;
+        }
+
+        @NotNull
+        public List<V> getValues() {
+            return values;
+        }
+
+        // the keys of the values, in the same order
+        @NotNull
+        public List<K> getKeys() {
+            return keys;
+        }
+
+        @NotNull
+        public List<K> getMissingKeys() {
+            return missingKeys;
+        }
+
+        public boolean isComplete() {
+            return missingKeys.isEmpty();
+        }
+    }
+
+    @NotNull
+    private final Map<K, ? extends Future<? extends V>> futures;
+
+    public CompositeFuture(@NotNull Map<K, ? extends Future<? extends V>> futures) {
+        this.futures = futures;
+    }
+
+    @NotNull
+    public <L> CompositeFuture<L, V> mapKeys(@NotNull Function<? super K, ? extends L> mapper) {
+        Map<L, Future<? extends V>> mapped = new LinkedHashMap<>();
+        futures.forEach((key, future) -> mapped.put(mapper.apply(key), future));
+        return new CompositeFuture<>(mapped);
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return futures.values().stream().anyMatch(Future::isCancelled);
+    }
+
+    @Override
+    public boolean isDone() {
+        return futures.values().stream().allMatch(Future::isDone);
+    }
+
+    @Override
+    public List<V> get() throws InterruptedException, ExecutionException {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+        List<V> result = new ArrayList<>();
+        for (Future<? extends V> future : futures.values()) {
+            result.add(future.get());
+        }
+        return result;
+    }
+
+    @Override
+    public List<V> get(long timeout, @NotNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        Partial<K, V> partial = getAvailable(timeout, unit);
+        if (!partial.isComplete()) {
+            throw new TimeoutException(partial.missingKeys.size() + " of " + futures.size() + " futures did not complete in time");
+        }
+        return partial.values;
+    }
+
+    @NotNull
+    public Partial<K, V> getAvailable(long timeout, @NotNull TimeUnit unit) throws InterruptedException, ExecutionException {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+
+        long start = System.nanoTime();
+        long timeoutNanos = unit.toNanos(timeout);
+        List<V> values = new ArrayList<>();
+        List<K> keys = new ArrayList<>();
+        List<K> missingKeys = new ArrayList<>();
+        for (Map.Entry<K, ? extends Future<? extends V>> entry : futures.entrySet()) {
+            try {
+                long remaining = Math.max(0, timeoutNanos - (System.nanoTime() - start));
+                values.add(entry.getValue().get(remaining, NANOSECONDS));
+                keys.add(entry.getKey());
+            } catch (TimeoutException e) {
+                missingKeys.add(entry.getKey());
+            }
+        }
+        return new Partial<>(values, keys, missingKeys);
+    }
+
+}
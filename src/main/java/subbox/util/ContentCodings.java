@@ -0,0 +1,44 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+public final class ContentCodings {
+
+    private ContentCodings() {
+    }
+
+    public static boolean accepts(@Nullable String acceptEncoding, @NotNull String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        boolean accepted = false;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase(coding)) {
+                return quality(parts) > 0;
+            }
+            if (name.equals("*")) {
+                accepted = quality(parts) > 0;
+            }
+        }
+        return accepted;
+    }
+
+    private static double quality(@NotNull String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+}
@@ -17,6 +17,12 @@ public final class Maps {
         return (Map<K, V>) newLinkedHashMap(k1, v1, k2, v2, k3, v3, k4, v4);
     }
 
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <K, V> Map<K, V> orderedMapOf(K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4, K k5, V v5) {
+        return (Map<K, V>) newLinkedHashMap(k1, v1, k2, v2, k3, v3, k4, v4, k5, v5);
+    }
+
     @NotNull
     private static Map<Object, Object> newLinkedHashMap(@NotNull Object... objects) {
         if (objects.length % 2 != 0) {
@@ -86,6 +86,104 @@ public final class MoreIterators {
         }
     }
 
+    @NotNull
+    public static <T> SortKeyIterator<T> mergeSortedByKey(@NotNull List<? extends SortKeyIterator<T>> iterators) {
+        if (iterators.isEmpty()) {
+            return emptySortKeyIterator();
+        }
+
+        while (iterators.size() > 1) {
+            List<SortKeyIterator<T>> mergedIterators = new ArrayList<>();
+            for (int i = 0; i < iterators.size(); i += 2) {
+                if (i == iterators.size() - 1) {
+                    mergedIterators.add(iterators.get(i));
+                    continue;
+                }
+
+                mergedIterators.add(new MergingByKeyImpl<>(iterators.get(i), iterators.get(i + 1)));
+            }
+            iterators = mergedIterators;
+        }
+
+        return iterators.get(0);
+    }
+
+    private static class MergingByKeyImpl<T> implements SortKeyIterator<T> {
+        @NotNull
+        private final SortKeyIterator<T> left;
+        @NotNull
+        private final SortKeyIterator<T> right;
+
+        MergingByKeyImpl(@NotNull SortKeyIterator<T> left, @NotNull SortKeyIterator<T> right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return left.hasNext() || right.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return nextIterator().next();
+        }
+
+        @Override
+        public long peekSortKey() {
+            return nextIterator().peekSortKey();
+        }
+
+        @Override
+        public void skip() {
+            nextIterator().skip();
+        }
+
+        @NotNull
+        private SortKeyIterator<T> nextIterator() {
+            boolean leftIsEmpty = !left.hasNext();
+            boolean rightIsEmpty = !right.hasNext();
+            if (leftIsEmpty && rightIsEmpty) {
+                throw new NoSuchElementException();
+            }
+
+            if (leftIsEmpty) {
+                return right;
+            }
+
+            if (rightIsEmpty) {
+                return left;
+            }
+
+            return left.peekSortKey() < right.peekSortKey() ? left : right;
+        }
+    }
+
+    @NotNull
+    private static <T> SortKeyIterator<T> emptySortKeyIterator() {
+        return new SortKeyIterator<>() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public T next() {
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public long peekSortKey() {
+                throw new NoSuchElementException();
+            }
+
+            @Override
+            public void skip() {
+                throw new NoSuchElementException();
+            }
+        };
+    }
+
     @NotNull
     @SuppressWarnings("WeakerAccess")
     public static <T> Iterator<T> empty() {
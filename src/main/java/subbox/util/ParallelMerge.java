@@ -0,0 +1,245 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public final class ParallelMerge {
+
+    private static final int SAMPLES_PER_PARTITION = 16;
+
+    public interface SortedRun<T> {
+        int size();
+
+        long sortKey(int index);
+
+        @NotNull
+        T get(int index);
+
+        boolean isComplete();
+
+        void markConsumed(int count);
+    }
+
+    private ParallelMerge() {
+    }
+
+    @Nullable
+    public static <T> List<T> merge(@NotNull List<? extends SortedRun<T>> runs,
+                                    long skip,
+                                    int limit,
+                                    @NotNull ForkJoinPool pool,
+                                    int partitions) {
+        long needed = skip + limit;
+        int[] known = knownSizes(runs);
+        if (known == null || Arrays.stream(known).asLongStream().sum() < needed && !allComplete(runs)) {
+            return null;
+        }
+
+        long[] boundaries = boundaries(runs, known, needed, partitions);
+        int[][] positions = new int[runs.size()][];
+        for (int i = 0; i < runs.size(); i++) {
+            positions[i] = new int[boundaries.length + 2];
+            for (int j = 0; j < boundaries.length; j++) {
+                positions[i][j + 1] = lowerBound(runs.get(i), boundaries[j], positions[i][j], known[i]);
+            }
+            positions[i][boundaries.length + 1] = known[i];
+        }
+
+        int[] consumed = new int[runs.size()];
+        List<PartitionTask<T>> tasks = new ArrayList<>();
+        long offset = 0;
+        for (int j = 0; j <= boundaries.length && offset < needed; j++) {
+            long size = 0;
+            for (int[] runPositions : positions) {
+                size += runPositions[j + 1] - runPositions[j];
+            }
+
+            if (offset + size <= skip) {
+                for (int i = 0; i < runs.size(); i++) {
+                    consumed[i] = positions[i][j + 1];
+                }
+            } else if (size > 0) {
+                long localSkip = Math.max(0, skip - offset);
+                long localEnd = Math.min(size, needed - offset);
+                tasks.add(new PartitionTask<>(runs, positions, j, localSkip, (int) (localEnd - localSkip)));
+            }
+            offset += size;
+        }
+
+        List<T> merged = new ArrayList<>(limit);
+        for (Future<List<T>> future : pool.invokeAll(tasks)) {
+            merged.addAll(getUninterrupted(future));
+        }
+        for (PartitionTask<T> task : tasks) {
+            for (int i = 0; i < runs.size(); i++) {
+                consumed[i] = Math.max(consumed[i], task.consumed[i]);
+            }
+        }
+        for (int i = 0; i < runs.size(); i++) {
+            if (consumed[i] > 0) {
+                runs.get(i).markConsumed(consumed[i]);
+            }
+        }
+        return merged;
+    }
+
+    @Nullable
+    private static int[] knownSizes(@NotNull List<? extends SortedRun<?>> runs) {
+        boolean bounded = false;
+        long horizon = Long.MAX_VALUE;
+        for (SortedRun<?> run : runs) {
+            if (run.isComplete()) {
+                continue;
+            }
+            if (run.size() == 0) {
+                return null;
+            }
+            bounded = true;
+            horizon = Math.min(horizon, run.sortKey(run.size() - 1));
+        }
+
+        int[] known = new int[runs.size()];
+        for (int i = 0; i < runs.size(); i++) {
+            SortedRun<?> run = runs.get(i);
+            known[i] = bounded ? lowerBound(run, horizon, 0, run.size()) : run.size();
+        }
+        return known;
+    }
+
+    private static boolean allComplete(@NotNull List<? extends SortedRun<?>> runs) {
+        return runs.stream().allMatch(SortedRun::isComplete);
+    }
+
+    @NotNull
+    private static long[] boundaries(@NotNull List<? extends SortedRun<?>> runs, @NotNull int[] known, long needed, int partitions) {
+        int samplesPerRun = Math.max(1, partitions * SAMPLES_PER_PARTITION / Math.max(1, runs.size()));
+        long[] samples = new long[runs.size() * samplesPerRun];
+        int sampleCount = 0;
+        for (int i = 0; i < runs.size(); i++) {
+            int candidates = (int) Math.min(known[i], needed);
+            int runSamples = Math.min(samplesPerRun, candidates);
+            for (int k = 0; k < runSamples; k++) {
+                samples[sampleCount++] = runs.get(i).sortKey((int) ((long) k * candidates / runSamples));
+            }
+        }
+        Arrays.sort(samples, 0, sampleCount);
+
+        long[] boundaries = new long[Math.max(0, partitions - 1)];
+        int boundaryCount = 0;
+        for (int p = 1; p < partitions && sampleCount > 0; p++) {
+            long boundary = samples[(int) ((long) p * sampleCount / partitions)];
+            if (boundaryCount == 0 || boundary > boundaries[boundaryCount - 1]) {
+                boundaries[boundaryCount++] = boundary;
+            }
+        }
+        return Arrays.copyOf(boundaries, boundaryCount);
+    }
+
+    private static int lowerBound(@NotNull SortedRun<?> run, long key, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (run.sortKey(middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @NotNull
+    private static <V> V getUninterrupted(@NotNull Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new Error("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static class PartitionTask<T> implements Callable<List<T>> {
+        @NotNull
+        private final List<RangeIterator<T>> iterators;
+        private final long skip;
+        private final int limit;
+        @NotNull
+        private final int[] consumed;
+
+        PartitionTask(@NotNull List<? extends SortedRun<T>> runs, @NotNull int[][] positions, int partition, long skip, int limit) {
+            this.iterators = new ArrayList<>(runs.size());
+            for (int i = 0; i < runs.size(); i++) {
+                iterators.add(new RangeIterator<>(runs.get(i), positions[i][partition], positions[i][partition + 1]));
+            }
+            this.skip = skip;
+            this.limit = limit;
+            this.consumed = new int[runs.size()];
+        }
+
+        @NotNull
+        @Override
+        public List<T> call() {
+            SortKeyIterator<T> merged = MoreIterators.mergeSortedByKey(iterators);
+            for (long skipped = 0; skipped < skip; skipped++) {
+                merged.skip();
+            }
+
+            List<T> result = new ArrayList<>(limit);
+            while (result.size() < limit) {
+                result.add(merged.next());
+            }
+
+            for (int i = 0; i < iterators.size(); i++) {
+                consumed[i] = iterators.get(i).index;
+            }
+            return result;
+        }
+    }
+
+    private static class RangeIterator<T> implements SortKeyIterator<T> {
+        @NotNull
+        private final SortedRun<T> run;
+        private final int end;
+        private int index;
+
+        RangeIterator(@NotNull SortedRun<T> run, int start, int end) {
+            this.run = run;
+            this.index = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < end;
+        }
+
+        @Override
+        public T next() {
+            return run.get(index++);
+        }
+
+        @Override
+        public long peekSortKey() {
+            return run.sortKey(index);
+        }
+
+        @Override
+        public void skip() {
+            index++;
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+public class RequestTimings {
+
+    @NotNull
+    private static final ThreadLocal<RequestTimings> current = new ThreadLocal<>();
+    @NotNull
+    private static final Stage NO_OP_STAGE = () -> {
+    };
+
+    private final boolean sampled;
+    @NotNull
+    private final LongSupplier nanoClock;
+    private final long startedAt;
+    @NotNull
+    private final Map<String, Long> stageNanos = new LinkedHashMap<>();
+    @NotNull
+    private final Map<String, Object> attributes = new LinkedHashMap<>();
+
+    RequestTimings(boolean sampled, @NotNull LongSupplier nanoClock) {
+        this.sampled = sampled;
+        this.nanoClock = nanoClock;
+        this.startedAt = nanoClock.getAsLong();
+    }
+
+    @NotNull
+    public static RequestTimings start(boolean sampled) {
+        RequestTimings timings = new RequestTimings(sampled, System::nanoTime);
+        current.set(timings);
+        return timings;
+    }
+
+    public static void end() {
+        current.remove();
+    }
+
+    @Nullable
+    public static RequestTimings current() {
+        return current.get();
+    }
+
+    @NotNull
+    public static Stage stage(@NotNull String name) {
+        RequestTimings timings = current.get();
+        return timings == null ? NO_OP_STAGE : timings.startStage(name);
+    }
+
+    public static boolean isSampled() {
+        RequestTimings timings = current.get();
+        return timings != null && timings.sampled;
+    }
+
+    public static void record(@NotNull String name, @NotNull Object value) {
+        RequestTimings timings = current.get();
+        if (timings != null && timings.sampled) {
+            timings.attributes.put(name, value);
+        }
+    }
+
+    @NotNull
+    Stage startStage(@NotNull String name) {
+        long stageStartedAt = nanoClock.getAsLong();
+        return () -> stageNanos.merge(name, nanoClock.getAsLong() - stageStartedAt, Long::sum);
+    }
+
+    @NotNull
+    public String toServerTiming() {
+        StringBuilder header = new StringBuilder();
+        stageNanos.forEach((name, nanos) -> appendMetric(header, name, nanos));
+        appendMetric(header, "total", nanoClock.getAsLong() - startedAt);
+        return header.toString();
+    }
+
+    @NotNull
+    public Map<String, Object> toTrace() {
+        Map<String, Object> trace = new LinkedHashMap<>();
+        Map<String, Double> stages = new LinkedHashMap<>();
+        stageNanos.forEach((name, nanos) -> stages.put(name, toMillis(nanos)));
+        trace.put("totalMs", toMillis(nanoClock.getAsLong() - startedAt));
+        trace.put("stagesMs", stages);
+        trace.putAll(attributes);
+        return trace;
+    }
+
+    private static void appendMetric(@NotNull StringBuilder header, @NotNull String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.3f", toMillis(nanos)));
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    @FunctionalInterface
+    public interface Stage extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+}
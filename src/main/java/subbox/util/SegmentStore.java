@@ -0,0 +1,280 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Comparator.comparingLong;
+
+public class SegmentStore implements Closeable {
+
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final byte TOMBSTONE = 0;
+    private static final byte VALUE = 1;
+    private static final int MAX_KEY_LENGTH = Short.MAX_VALUE;
+
+    @NotNull
+    private final Path file;
+    private final long maxBytes;
+    @NotNull
+    private final HashMap<String, Entry> index = new HashMap<>();
+
+    @NotNull
+    private FileChannel channel;
+    private long fileBytes;
+    private long liveBytes;
+    private long puts;
+    private long hits;
+    private long misses;
+    private long compactions;
+    private long droppedEntries;
+
+    public SegmentStore(@NotNull Path file, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("max bytes must be positive");
+        }
+
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.channel = FileChannel.open(file, CREATE, READ, WRITE);
+        recover();
+    }
+
+    public synchronized boolean put(@NotNull String key, @NotNull byte[] value) throws IOException {
+        ByteBuffer record = record(VALUE, key, value);
+        if (record.remaining() > maxBytes / 2) {
+            return false;
+        }
+
+        long offset = fileBytes;
+        write(record, offset);
+        remove(index.put(key, new Entry(offset, record.limit())));
+        liveBytes += record.limit();
+        puts++;
+
+        if (fileBytes > maxBytes) {
+            compact();
+        }
+        return true;
+    }
+
+    @Nullable
+    public synchronized byte[] take(@NotNull String key) throws IOException {
+        Entry entry = index.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(entry.length);
+        read(record, entry.offset);
+        index.remove(key);
+        remove(entry);
+        write(record(TOMBSTONE, key, new byte[0]), fileBytes);
+        hits++;
+
+        record.position(HEADER_SIZE + 1 + Short.BYTES + record.getShort(HEADER_SIZE + 1));
+        byte[] value = new byte[record.remaining()];
+        record.get(value);
+        if (fileBytes > maxBytes) {
+            compact();
+        }
+        return value;
+    }
+
+    public synchronized boolean contains(@NotNull String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getFileBytes() {
+        return fileBytes;
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    @NotNull
+    public synchronized Map<String, ?> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", index.size());
+        stats.put("liveBytes", liveBytes);
+        stats.put("fileBytes", fileBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("puts", puts);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("compactions", compactions);
+        stats.put("droppedEntries", droppedEntries);
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void recover() throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long offset = 0;
+        while (offset + HEADER_SIZE <= size) {
+            header.clear();
+            read(header, offset);
+            int bodyLength = header.getInt(0);
+            if (bodyLength < 1 + Short.BYTES || offset + HEADER_SIZE + bodyLength > size) {
+                break;
+            }
+
+            ByteBuffer body = ByteBuffer.allocate(bodyLength);
+            read(body, offset + HEADER_SIZE);
+            if (crc(body.array()) != header.getInt(Integer.BYTES)) {
+                break;
+            }
+
+            body.flip();
+            byte type = body.get();
+            byte[] key = new byte[body.getShort()];
+            body.get(key);
+            Entry previous = type == VALUE
+                    ? index.put(new String(key, UTF_8), new Entry(offset, HEADER_SIZE + bodyLength))
+                    : index.remove(new String(key, UTF_8));
+            if (type == VALUE) {
+                liveBytes += HEADER_SIZE + bodyLength;
+            }
+            if (previous != null) {
+                liveBytes -= previous.length;
+            }
+            offset += HEADER_SIZE + bodyLength;
+        }
+
+        // a torn record at the end is the remainder of an interrupted write
+        channel.truncate(offset);
+        fileBytes = offset;
+        if (fileBytes > maxBytes) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        List<Map.Entry<String, Entry>> entries = new ArrayList<>(index.entrySet());
+        entries.sort(comparingLong(entry -> entry.getValue().offset));
+
+        // oldest entries are dropped first, leaving room to append before the next compaction
+        int first = 0;
+        long keptBytes = liveBytes;
+        while (keptBytes > maxBytes / 2) {
+            keptBytes -= entries.get(first++).getValue().length;
+        }
+
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        HashMap<String, Entry> compactedIndex = new HashMap<>();
+        long offset = 0;
+        try (FileChannel target = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (int i = first; i < entries.size(); i++) {
+                Entry entry = entries.get(i).getValue();
+                ByteBuffer record = ByteBuffer.allocate(entry.length);
+                read(record, entry.offset);
+                record.flip();
+                while (record.hasRemaining()) {
+                    target.write(record, offset + record.position());
+                }
+                compactedIndex.put(entries.get(i).getKey(), new Entry(offset, entry.length));
+                offset += entry.length;
+            }
+            target.force(true);
+        }
+
+        channel.close();
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, READ, WRITE);
+        index.clear();
+        index.putAll(compactedIndex);
+        droppedEntries += first;
+        fileBytes = offset;
+        liveBytes = offset;
+        compactions++;
+    }
+
+    private void remove(@Nullable Entry entry) {
+        if (entry != null) {
+            liveBytes -= entry.length;
+        }
+    }
+
+    private void write(@NotNull ByteBuffer record, long offset) throws IOException {
+        int length = record.remaining();
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        fileBytes = Math.max(fileBytes, offset + length);
+    }
+
+    private void read(@NotNull ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of segment file " + file);
+            }
+        }
+    }
+
+    @NotNull
+    private static ByteBuffer record(byte type, @NotNull String key, @NotNull byte[] value) {
+        byte[] keyBytes = key.getBytes(UTF_8);
+        if (keyBytes.length > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("key is longer than " + MAX_KEY_LENGTH + " bytes");
+        }
+
+        ByteBuffer body = ByteBuffer.allocate(1 + Short.BYTES + keyBytes.length + value.length);
+        body.put(type)
+                .putShort((short) keyBytes.length)
+                .put(keyBytes)
+                .put(value);
+
+        ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + body.capacity());
+        record.putInt(body.capacity())
+                .putInt(crc(body.array()))
+                .put(body.array())
+                .flip();
+        return record;
+    }
+
+    private static int crc(@NotNull byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return (int) crc.getValue();
+    }
+
+    private static class Entry {
+        private final long offset;
+        private final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+}
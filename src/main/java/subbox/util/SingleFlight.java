@@ -0,0 +1,99 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SingleFlight<K, V> {
+
+    public static class Result<V> {
+        private final V value;
+        private final boolean collapsed;
+
+        Result(V value, boolean collapsed) {
+            this.value = value;
+            this.collapsed = collapsed;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        // true when the value was computed by a concurrent call with the same key
+        public boolean isCollapsed() {
+            return collapsed;
+        }
+    }
+
+    @NotNull
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    @NotNull
+    private final LongAdder executions = new LongAdder();
+    @NotNull
+    private final LongAdder collapsed = new LongAdder();
+
+    @NotNull
+    public Result<V> execute(@NotNull K key, @NotNull Callable<V> callable) throws ExecutionException {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            collapsed.increment();
+            return new Result<>(await(existing), true);
+        }
+
+        executions.increment();
+        try {
+            V value = callable.call();
+            future.complete(value);
+            return new Result<>(value, false);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+            throw rethrow(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    @NotNull
+    public Map<String, ?> getStats() {
+        long executionCount = executions.sum();
+        long collapsedCount = collapsed.sum();
+        long total = executionCount + collapsedCount;
+        return Maps.orderedMapOf(
+                "requests", total,
+                "executions", executionCount,
+                "collapsed", collapsedCount,
+                "collapseRate", total == 0 ? 0 : (double) collapsedCount / total
+        );
+    }
+
+    private static <V> V await(@NotNull CompletableFuture<V> future) throws ExecutionException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new Error("Thread was interrupted", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    @NotNull
+    private static ExecutionException rethrow(@NotNull Throwable e) throws ExecutionException {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        if (e instanceof ExecutionException) {
+            throw (ExecutionException) e;
+        }
+        throw new ExecutionException(e);
+    }
+
+}
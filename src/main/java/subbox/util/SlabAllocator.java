@@ -0,0 +1,185 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SlabAllocator {
+
+    public static final long NO_SPACE = -1;
+
+    private static final int MIN_SIZE_CLASS = 6;
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    private final int slabSize;
+    private final int maxSlabs;
+    private final int maxSizeClass;
+    @NotNull
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    @NotNull
+    private final List<ArrayDeque<Long>> freeLists = new ArrayList<>();
+
+    private int bumpOffset;
+    private long requestedBytes;
+    private long allocatedBytes;
+    private long freeListBytes;
+
+    public SlabAllocator(int slabSize, int maxSlabs) {
+        if (Integer.bitCount(slabSize) != 1 || slabSize < 1 << MIN_SIZE_CLASS || slabSize > MAX_SLAB_SIZE) {
+            throw new IllegalArgumentException("slab size must be a power of two between 64 bytes and 1 GiB");
+        }
+        if (maxSlabs <= 0) {
+            throw new IllegalArgumentException("max slabs must be positive");
+        }
+
+        this.slabSize = slabSize;
+        this.maxSlabs = maxSlabs;
+        this.maxSizeClass = Integer.numberOfTrailingZeros(slabSize);
+        for (int i = 0; i <= maxSizeClass; i++) {
+            freeLists.add(new ArrayDeque<>());
+        }
+        this.bumpOffset = slabSize;
+    }
+
+    public synchronized long allocate(int size) {
+        if (size <= 0 || size > slabSize) {
+            return NO_SPACE;
+        }
+
+        int sizeClass = sizeClass(size);
+        long address = takeFree(sizeClass);
+        if (address == NO_SPACE) {
+            address = bump(sizeClass);
+        }
+        if (address == NO_SPACE) {
+            address = split(sizeClass);
+        }
+        if (address == NO_SPACE) {
+            return NO_SPACE;
+        }
+
+        requestedBytes += size;
+        allocatedBytes += 1L << sizeClass;
+        return address;
+    }
+
+    public synchronized void free(long address, int size) {
+        int sizeClass = sizeClassOf(address);
+        requestedBytes -= size;
+        allocatedBytes -= 1L << sizeClass;
+        addFree(address);
+    }
+
+    @NotNull
+    public ByteBuffer slice(long address, int size) {
+        ByteBuffer slab;
+        synchronized (this) {
+            slab = slabs.get(slabOf(address));
+        }
+        ByteBuffer slice = slab.duplicate();
+        slice.position(offsetOf(address));
+        slice.limit(offsetOf(address) + size);
+        return slice.slice();
+    }
+
+    public synchronized long getCapacityBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    public synchronized long getRequestedBytes() {
+        return requestedBytes;
+    }
+
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public synchronized long getFreeListBytes() {
+        return freeListBytes;
+    }
+
+    private long takeFree(int sizeClass) {
+        Long address = freeLists.get(sizeClass).poll();
+        if (address == null) {
+            return NO_SPACE;
+        }
+        freeListBytes -= 1L << sizeClass;
+        return address;
+    }
+
+    private long bump(int sizeClass) {
+        int size = 1 << sizeClass;
+        if (bumpOffset + size > slabSize) {
+            if (slabs.size() == maxSlabs) {
+                return NO_SPACE;
+            }
+            retireSlabTail();
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            bumpOffset = 0;
+        }
+
+        long address = address(slabs.size() - 1, sizeClass, bumpOffset);
+        bumpOffset += size;
+        return address;
+    }
+
+    private long split(int sizeClass) {
+        for (int larger = sizeClass + 1; larger <= maxSizeClass; larger++) {
+            long address = takeFree(larger);
+            if (address == NO_SPACE) {
+                continue;
+            }
+
+            int slab = slabOf(address);
+            int offset = offsetOf(address);
+            for (int half = larger - 1; half >= sizeClass; half--) {
+                addFree(address(slab, half, offset + (1 << half)));
+            }
+            return address(slab, sizeClass, offset);
+        }
+        return NO_SPACE;
+    }
+
+    private void retireSlabTail() {
+        if (slabs.isEmpty()) {
+            return;
+        }
+
+        int slab = slabs.size() - 1;
+        while (bumpOffset < slabSize) {
+            int sizeClass = Integer.numberOfTrailingZeros(bumpOffset);
+            addFree(address(slab, sizeClass, bumpOffset));
+            bumpOffset += 1 << sizeClass;
+        }
+    }
+
+    private void addFree(long address) {
+        int sizeClass = sizeClassOf(address);
+        freeLists.get(sizeClass).push(address);
+        freeListBytes += 1L << sizeClass;
+    }
+
+    private static int sizeClass(int size) {
+        return Math.max(MIN_SIZE_CLASS, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    private static long address(int slab, int sizeClass, int offset) {
+        return (long) slab << 38 | (long) sizeClass << 32 | offset;
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 38);
+    }
+
+    private static int sizeClassOf(long address) {
+        return (int) (address >>> 32) & 0x3F;
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+
+}
@@ -0,0 +1,11 @@
+package subbox.util;
+
+import java.util.Iterator;
+
+public interface SortKeyIterator<T> extends Iterator<T> {
+
+    long peekSortKey();
+
+    void skip();
+
+}
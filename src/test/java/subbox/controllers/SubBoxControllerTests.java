@@ -0,0 +1,225 @@
+package subbox.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.services.youtube.model.Channel;
+import com.google.api.services.youtube.model.ChannelContentDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.services.AccessHistory;
+import subbox.services.CachingAsyncVideoService;
+import subbox.services.RefreshingVideoCache;
+import subbox.services.ResponsePageCache;
+import subbox.services.WebSubSubscriber;
+import subbox.services.YouTubeService;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
+
+class SubBoxControllerTests {
+
+    private static final String FAST_CHANNEL_ID = "UCfast";
+    private static final String SLOW_CHANNEL_ID = "UCslow";
+    private static final String DEEP_CHANNEL_ID = "UCdeep";
+
+    private final CountDownLatch slowPlaylistReleased = new CountDownLatch(1);
+    private final CountDownLatch deepPageReleased = new CountDownLatch(1);
+    private final AtomicInteger deepPageLoads = new AtomicInteger();
+    private final RefreshingVideoCache videoCache = new RefreshingVideoCache(new FakeYouTubeService(), new WebSubSubscriber());
+    private final ResponsePageCache responsePageCache = new ResponsePageCache();
+    private final SubBoxController controller = new SubBoxController();
+
+    @BeforeEach
+    void initController() {
+        videoCache.setEvictionThreshold(Duration.ofDays(1));
+        videoCache.setUpdatePeriod(Duration.ofDays(1));
+        videoCache.setInitialVideosPerPlaylist(20);
+        videoCache.setVideosPerPlaylist(100);
+        videoCache.setPushFallbackPollPeriod(Duration.ofDays(1));
+        videoCache.setPushMinRefreshInterval(Duration.ofMinutes(1));
+        videoCache.setProbeParallelism(1);
+        videoCache.setMaxProbeFailures(3);
+        videoCache.setStorage("heap");
+        videoCache.setDiskTierEnabled(false);
+        videoCache.init();
+
+        responsePageCache.setMaximumBytes(1 << 20);
+        responsePageCache.init();
+
+        CachingAsyncVideoService videoService = new CachingAsyncVideoService();
+        ReflectionTestUtils.setField(videoService, "youTubeService", new FakeYouTubeService());
+        ReflectionTestUtils.setField(videoService, "videoCache", videoCache);
+
+        controller.setTraceSampleRate(0);
+        controller.setDefaultDeadline(Duration.ofSeconds(10));
+        controller.setMergeParallelism(1);
+        controller.setParallelMinPlaylists(500);
+        controller.setParallelMinItems(500);
+        ReflectionTestUtils.setField(controller, "videoService", videoService);
+        ReflectionTestUtils.setField(controller, "accessHistory", new AccessHistory());
+        ReflectionTestUtils.setField(controller, "responsePageCache", responsePageCache);
+        ReflectionTestUtils.setField(controller, "objectMapper", new ObjectMapper());
+        controller.init();
+    }
+
+    @AfterEach
+    void destroyController() {
+        slowPlaylistReleased.countDown();
+        deepPageReleased.countDown();
+        controller.destroy();
+        videoCache.destroy();
+    }
+
+    @Test
+    void testCompleteResponseIsCached() throws Exception {
+        slowPlaylistReleased.countDown();
+
+        ResponseEntity<byte[]> response = videos(null);
+
+        Assertions.assertEquals(200, response.getStatusCodeValue());
+        Assertions.assertFalse(response.getHeaders().containsKey("X-Missing-Channels"));
+        Assertions.assertFalse(response.getHeaders().containsKey(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(body(response).contains("fast-video"));
+        Assertions.assertTrue(body(response).contains("slow-video"));
+        Assertions.assertEquals(1L, responsePageCache.getStats().get("entries"));
+    }
+
+    @Test
+    void testPartialResponseNamesMissingChannels() throws Exception {
+        ResponseEntity<byte[]> response = videos(100L);
+
+        Assertions.assertEquals(200, response.getStatusCodeValue());
+        Assertions.assertEquals(List.of(SLOW_CHANNEL_ID), response.getHeaders().get("X-Missing-Channels"));
+        Assertions.assertEquals(List.of("1"), response.getHeaders().get(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(body(response).contains("fast-video"));
+        Assertions.assertFalse(body(response).contains("slow-video"));
+    }
+
+    @Test
+    void testPartialResponseBypassesPageCache() throws Exception {
+        videos(100L);
+        Assertions.assertEquals(0L, responsePageCache.getStats().get("entries"));
+
+        slowPlaylistReleased.countDown();
+        ResponseEntity<byte[]> response = videos(null);
+        Assertions.assertFalse(response.getHeaders().containsKey("X-Missing-Channels"));
+        Assertions.assertTrue(body(response).contains("slow-video"));
+    }
+
+    @Test
+    void testDeeperPageIsLoadedInBackgroundAfterDeadline() throws Exception {
+        ResponseEntity<byte[]> response = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> controller.videos(Set.of(FAST_CHANNEL_ID, DEEP_CHANNEL_ID), 20, 0, 200L, null, null));
+
+        Assertions.assertEquals(List.of(DEEP_CHANNEL_ID), response.getHeaders().get("X-Incomplete-Channels"));
+        Assertions.assertEquals(List.of("1"), response.getHeaders().get(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(body(response).contains("deep-video"));
+        Assertions.assertFalse(body(response).contains("deep-older-video"));
+        Assertions.assertEquals(0L, responsePageCache.getStats().get("entries"));
+
+        deepPageReleased.countDown();
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        do {
+            Assertions.assertTrue(System.nanoTime() < deadline, "deeper page not loaded in time");
+            response = controller.videos(Set.of(FAST_CHANNEL_ID, DEEP_CHANNEL_ID), 20, 0, 200L, null, null);
+        } while (response.getHeaders().containsKey("X-Incomplete-Channels"));
+        Assertions.assertFalse(response.getHeaders().containsKey(HttpHeaders.RETRY_AFTER));
+        Assertions.assertTrue(body(response).contains("deep-older-video"));
+        Assertions.assertEquals(1, deepPageLoads.get());
+    }
+
+    @Test
+    void testPartialResponseDoesNotWaitForDeeperPage() {
+        ResponseEntity<byte[]> response = Assertions.assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> controller.videos(Set.of(SLOW_CHANNEL_ID, DEEP_CHANNEL_ID), 20, 0, 100L, null, null));
+
+        Assertions.assertEquals(List.of(SLOW_CHANNEL_ID), response.getHeaders().get("X-Missing-Channels"));
+        Assertions.assertEquals(List.of(DEEP_CHANNEL_ID), response.getHeaders().get("X-Incomplete-Channels"));
+        Assertions.assertTrue(body(response).contains("deep-video"));
+    }
+
+    @Test
+    void testDeadlineIsCapped() {
+        Assertions.assertEquals(SECONDS.toNanos(60), SubBoxController.deadlineNanos(Long.MAX_VALUE));
+        Assertions.assertEquals(SECONDS.toNanos(60), SubBoxController.deadlineNanos(60_001L));
+        Assertions.assertEquals(SECONDS.toNanos(1), SubBoxController.deadlineNanos(1_000L));
+        Assertions.assertEquals(SECONDS.toNanos(10), SubBoxController.deadlineNanos(null));
+    }
+
+    private ResponseEntity<byte[]> videos(Long deadline) throws Exception {
+        return controller.videos(Set.of(FAST_CHANNEL_ID, SLOW_CHANNEL_ID), 20, 0, deadline, null, null);
+    }
+
+    private static String body(ResponseEntity<byte[]> response) {
+        return new String(response.getBody(), StandardCharsets.UTF_8);
+    }
+
+    private static Channel channel(String channelId) {
+        ChannelContentDetails.RelatedPlaylists playlists = new ChannelContentDetails.RelatedPlaylists()
+                .setUploads("UU" + channelId.substring(2));
+        return new Channel()
+                .setId(channelId)
+                .setContentDetails(new ChannelContentDetails().setRelatedPlaylists(playlists));
+    }
+
+    private class FakeYouTubeService implements YouTubeService {
+        @Override
+        public Optional<Channel> getChannel(String channelId) {
+            return Optional.of(channel(channelId));
+        }
+
+        @Override
+        public List<Channel> getChannels(List<String> channelIds) {
+            return channelIds.stream()
+                    .map(SubBoxControllerTests::channel)
+                    .collect(toList());
+        }
+
+        @Override
+        public Map<String, String> getPlaylistETags(List<String> playlistIds) {
+            return playlistIds.stream().collect(toMap(Function.identity(), playlistId -> "etag"));
+        }
+
+        @Override
+        public PlaylistPage getVideos(String playlistId, String pageToken, long maxVideos) {
+            String name = playlistId.substring(2);
+            if ("slow".equals(name)) {
+                try {
+                    slowPlaylistReleased.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            if ("deep".equals(name) && pageToken != null) {
+                deepPageLoads.incrementAndGet();
+                try {
+                    deepPageReleased.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                CachedVideo video = new CachedVideo("deep-older-video", DEEP_CHANNEL_ID, -1, name, null, 0, 0);
+                return new PlaylistPage(List.of(video), null);
+            }
+            CachedVideo video = new CachedVideo(name + "-video", "UC" + name, 0, name, null, 0, 0);
+            return new PlaylistPage(List.of(video), "deep".equals(name) ? "page-2" : null);
+        }
+    }
+
+}
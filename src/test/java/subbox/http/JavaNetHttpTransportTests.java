@@ -0,0 +1,139 @@
+package subbox.http;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class JavaNetHttpTransportTests {
+
+    private final CountDownLatch stalled = new CountDownLatch(1);
+    private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+    // a single permit, so a request that leaks it blocks every later one
+    private final JavaNetHttpTransport transport = new JavaNetHttpTransport(Duration.ofSeconds(5), 1);
+    private HttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/complete", exchange -> {
+            byte[] body = "complete body".getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.createContext("/stalled", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("partial".getBytes(UTF_8));
+            out.flush();
+            try {
+                stalled.await(10, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        stalled.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void testPermitReleasedWhenBodyIsRead() throws Exception {
+        LowLevelHttpResponse response = execute("/complete", 1000);
+        try (InputStream content = response.getContent()) {
+            Assertions.assertEquals("complete body", new String(content.readAllBytes(), UTF_8));
+        }
+
+        assertPermitAvailable();
+    }
+
+    @Test
+    void testPermitReleasedWhenBodyIsClosedEarly() throws Exception {
+        LowLevelHttpResponse response = execute("/stalled", 0);
+        InputStream content = response.getContent();
+        Assertions.assertEquals('p', content.read());
+        content.close();
+
+        assertPermitAvailable();
+    }
+
+    @Test
+    void testPermitReleasedOnDisconnect() throws Exception {
+        execute("/stalled", 0).disconnect();
+
+        assertPermitAvailable();
+    }
+
+    @Test
+    void testPermitReleasedWhenRequestFails() throws Exception {
+        int closedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        LowLevelHttpRequest request = transport.buildRequest("GET", "http://127.0.0.1:" + closedPort + "/");
+        request.setTimeout(1000, 1000);
+        Assertions.assertThrows(IOException.class, request::execute);
+
+        assertPermitAvailable();
+    }
+
+    @Test
+    void testStalledBodyTimesOut() throws Exception {
+        LowLevelHttpResponse response = execute("/stalled", 200);
+        InputStream content = response.getContent();
+        Assertions.assertEquals("partial", new String(content.readNBytes(7), UTF_8));
+
+        Assertions.assertThrows(SocketTimeoutException.class, content::read);
+
+        assertPermitAvailable();
+    }
+
+    private LowLevelHttpResponse execute(String path, int readTimeout) throws IOException {
+        LowLevelHttpRequest request = transport.buildRequest("GET", url(path));
+        request.setTimeout(1000, readTimeout);
+        return request.execute();
+    }
+
+    private void assertPermitAvailable() throws Exception {
+        CompletableFuture<String> body = CompletableFuture.supplyAsync(() -> {
+            try (InputStream content = execute("/complete", 1000).getContent()) {
+                return new String(content.readAllBytes(), UTF_8);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assertions.assertEquals("complete body", body.get(5, SECONDS));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+}
@@ -0,0 +1,101 @@
+package subbox.http;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+class TimedBodySubscriberTests {
+
+    private final AtomicInteger finished = new AtomicInteger();
+    private final FakeSubscription subscription = new FakeSubscription();
+
+    @Test
+    void testReadsBodyAndFinishesAtEnd() throws IOException {
+        TimedBodySubscriber body = subscribe(1000);
+        body.onNext(List.of(buffer("hello "), buffer("world")));
+        body.onComplete();
+
+        Assertions.assertEquals("hello world", new String(body.readAllBytes(), UTF_8));
+        Assertions.assertEquals(1, finished.get());
+        Assertions.assertEquals(2, subscription.requested);
+
+        body.close();
+        Assertions.assertEquals(1, finished.get());
+        Assertions.assertFalse(subscription.cancelled);
+    }
+
+    @Test
+    void testCloseBeforeEndCancelsAndFinishes() throws IOException {
+        TimedBodySubscriber body = subscribe(1000);
+        body.onNext(List.of(buffer("partial")));
+        Assertions.assertEquals('p', body.read());
+
+        body.close();
+        body.close();
+
+        Assertions.assertTrue(subscription.cancelled);
+        Assertions.assertEquals(1, finished.get());
+        Assertions.assertThrows(IOException.class, body::read);
+    }
+
+    @Test
+    void testErrorFinishes() {
+        TimedBodySubscriber body = subscribe(1000);
+        body.onError(new IOException("connection reset"));
+
+        IOException e = Assertions.assertThrows(IOException.class, body::read);
+        Assertions.assertEquals("connection reset", e.getCause().getMessage());
+        Assertions.assertEquals(1, finished.get());
+
+        body.close();
+        Assertions.assertEquals(1, finished.get());
+    }
+
+    @Test
+    void testStalledBodyTimesOut() throws IOException {
+        TimedBodySubscriber body = subscribe(50);
+        body.onNext(List.of(buffer("partial")));
+        Assertions.assertEquals(7, body.read(new byte[16]));
+
+        long start = System.nanoTime();
+        Assertions.assertThrows(SocketTimeoutException.class, () -> body.read(new byte[16]));
+        Assertions.assertTrue(System.nanoTime() - start >= 50_000_000L);
+
+        Assertions.assertTrue(subscription.cancelled);
+        Assertions.assertEquals(1, finished.get());
+    }
+
+    private TimedBodySubscriber subscribe(long readTimeoutMillis) {
+        TimedBodySubscriber body = new TimedBodySubscriber(readTimeoutMillis, finished::incrementAndGet);
+        body.onSubscribe(subscription);
+        return body;
+    }
+
+    private static ByteBuffer buffer(String content) {
+        return ByteBuffer.wrap(content.getBytes(UTF_8));
+    }
+
+    private static class FakeSubscription implements Flow.Subscription {
+        private long requested;
+        private boolean cancelled;
+
+        @Override
+        public void request(long n) {
+            requested += n;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package subbox.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+class AccessHistoryTests {
+
+    private Path historyFile;
+
+    @BeforeEach
+    void configure() throws IOException {
+        historyFile = Files.createTempFile("access-history", ".tsv");
+        Files.delete(historyFile);
+
+        AccessHistory config = new AccessHistory();
+        config.setHistoryFile(historyFile.toString());
+        // one save per half-life halves the weights recorded before it
+        config.setSavePeriod(Duration.ofHours(1));
+        config.setHalfLife(Duration.ofHours(1));
+        config.setHistorySize(100);
+    }
+
+    @AfterEach
+    void deleteHistory() throws IOException {
+        Files.deleteIfExists(historyFile);
+    }
+
+    @Test
+    void testStartsEmptyWithoutHistoryFile() {
+        Assertions.assertTrue(session(List.of()).getHottest(10).isEmpty());
+    }
+
+    @Test
+    void testOrdersByAccessCount() {
+        session(List.of("UCa", "UCb", "UCb", "UCc", "UCc", "UCc"));
+
+        Assertions.assertEquals(List.of("UCc", "UCb"), session(List.of()).getHottest(2));
+    }
+
+    @Test
+    void testOlderAccessesDecay() {
+        session(Collections.nCopies(4, "UCold"));
+        session(Collections.nCopies(3, "UCnew"));
+
+        Assertions.assertEquals(List.of("UCnew", "UCold"), session(List.of()).getHottest(10));
+        Map<String, Double> weights = readWeights();
+        Assertions.assertEquals(1.0, weights.get("UCold"), 1e-9);
+        Assertions.assertEquals(1.5, weights.get("UCnew"), 1e-9);
+    }
+
+    @Test
+    void testHistorySizeIsCapped() {
+        new AccessHistory().setHistorySize(2);
+        session(List.of("UCa", "UCb", "UCb", "UCc", "UCc", "UCc"));
+
+        Assertions.assertEquals(List.of("UCc", "UCb"), session(List.of()).getHottest(10));
+        Assertions.assertEquals(2, readWeights().size());
+    }
+
+    // records the accesses of one run of the service, which are saved on shutdown
+    private static AccessHistory session(List<String> channelIds) {
+        AccessHistory history = new AccessHistory();
+        history.init();
+        history.record(channelIds);
+        history.destroy();
+        return history;
+    }
+
+    private Map<String, Double> readWeights() {
+        try {
+            return Files.readAllLines(historyFile)
+                    .stream()
+                    .map(line -> line.split("\t"))
+                    .collect(Collectors.toMap(fields -> fields[1], fields -> Double.parseDouble(fields[0])));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+}
@@ -0,0 +1,145 @@
+package subbox.services;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import subbox.util.CompositeFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class CacheWarmerTests {
+
+    private final BlockingQueue<CompletableFuture<List<CachedPlaylist>>> warmUps = new LinkedBlockingQueue<>();
+    private final List<String> hottestChannelIds = new ArrayList<>();
+    private final CacheWarmer warmer = new CacheWarmer();
+
+    @BeforeEach
+    void configure() {
+        warmer.setQuotaBudget(1_000_000);
+        warmer.setConcurrency(2);
+        warmer.setReadyFraction(0.4);
+        ReflectionTestUtils.setField(warmer, "accessHistory", new AccessHistory() {
+            @NotNull
+            @Override
+            public synchronized List<String> getHottest(int limit) {
+                return hottestChannelIds.subList(0, Math.min(limit, hottestChannelIds.size()));
+            }
+        });
+        ReflectionTestUtils.setField(warmer, "videoService", new AsyncVideoService() {
+            @NotNull
+            @Override
+            public CompositeFuture<String, CachedPlaylist> getUploadedVideos(@NotNull List<String> channelIds) {
+                throw new UnsupportedOperationException();
+            }
+
+            @NotNull
+            @Override
+            public Future<List<CachedPlaylist>> warmUp(@NotNull List<String> channelIds) {
+                CompletableFuture<List<CachedPlaylist>> warmUp = new CompletableFuture<>();
+                warmUps.add(warmUp);
+                return warmUp;
+            }
+
+            @NotNull
+            @Override
+            public Future<?> loadNextPage(@NotNull CachedPlaylist playlist) {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @AfterEach
+    void finishWarmUps() throws InterruptedException {
+        CompletableFuture<List<CachedPlaylist>> warmUp;
+        while ((warmUp = warmUps.poll(200, MILLISECONDS)) != null) {
+            warmUp.complete(List.of());
+        }
+    }
+
+    @Test
+    void testReadyWithoutHistory() {
+        warmer.warmUp();
+
+        Assertions.assertTrue(warmer.isReady());
+        Assertions.assertEquals(0, warmer.getTargetChannels());
+    }
+
+    @Test
+    void testWarmsUpWithBoundedConcurrency() throws Exception {
+        addChannels(250);
+        warmer.warmUp();
+
+        CompletableFuture<List<CachedPlaylist>> first = warmUps.poll(10, SECONDS);
+        Assertions.assertNotNull(warmUps.poll(10, SECONDS));
+        Assertions.assertNull(warmUps.poll(200, MILLISECONDS));
+
+        first.complete(List.of());
+        Assertions.assertNotNull(warmUps.poll(10, SECONDS));
+        Assertions.assertNull(warmUps.poll(200, MILLISECONDS));
+    }
+
+    @Test
+    void testReadyOnceFractionIsWarm() throws Exception {
+        addChannels(250);
+        warmer.warmUp();
+        Assertions.assertEquals(250, warmer.getTargetChannels());
+
+        warmUps.take().complete(List.of());
+        awaitTrue(() -> warmer.getWarmedChannels() == 50);
+        Assertions.assertFalse(warmer.isReady());
+
+        warmUps.take().completeExceptionally(new IllegalStateException("quota exceeded"));
+        warmUps.take().complete(List.of());
+        awaitTrue(() -> warmer.getWarmedChannels() == 100);
+        Assertions.assertTrue(warmer.isReady());
+        Assertions.assertEquals(100, warmer.getWarmedChannels());
+    }
+
+    @Test
+    void testWarmUpIsBoundedByQuotaBudget() {
+        addChannels(250);
+        // a full chunk of 50 channels, then a channels.list call and two units for each of 10 more playlists
+        warmer.setQuotaBudget(101 + 1 + 2 * 10);
+        warmer.warmUp();
+
+        Assertions.assertEquals(60, warmer.getTargetChannels());
+    }
+
+    @Test
+    void testChannelsWithinBudget() {
+        Assertions.assertEquals(0, CacheWarmer.channelsWithinBudget(0));
+        Assertions.assertEquals(0, CacheWarmer.channelsWithinBudget(2));
+        Assertions.assertEquals(1, CacheWarmer.channelsWithinBudget(3));
+        Assertions.assertEquals(50, CacheWarmer.channelsWithinBudget(101));
+        Assertions.assertEquals(50, CacheWarmer.channelsWithinBudget(103));
+        Assertions.assertEquals(51, CacheWarmer.channelsWithinBudget(104));
+        Assertions.assertEquals(1980, CacheWarmer.channelsWithinBudget(4000));
+    }
+
+    private void addChannels(int count) {
+        for (int i = 0; i < count; i++) {
+            hottestChannelIds.add("UC" + i);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assertions.assertTrue(System.nanoTime() < deadline, "condition not met in time");
+            Thread.sleep(5);
+        }
+    }
+
+}
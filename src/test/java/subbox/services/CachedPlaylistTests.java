@@ -0,0 +1,258 @@
+package subbox.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.util.ParallelMerge;
+import subbox.util.SortKeyIterator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class CachedPlaylistTests {
+
+    private final Map<String, PlaylistPage> pages = new HashMap<>();
+    private final List<String> loadedTokens = new ArrayList<>();
+
+    @Test
+    void testIteratorLoadsPagesOnDemand() {
+        pages.put("2", page("3", video("c", 70), video("d", 60)));
+        pages.put("3", page(null, video("e", 50)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        SortKeyIterator<CachedVideo> iterator = playlist.iterator();
+        Assertions.assertEquals("a", iterator.next().getId());
+        Assertions.assertEquals("b", iterator.next().getId());
+        Assertions.assertTrue(loadedTokens.isEmpty());
+
+        Assertions.assertEquals(-70, iterator.peekSortKey());
+        Assertions.assertEquals(List.of("2"), loadedTokens);
+        Assertions.assertEquals(List.of("c", "d", "e"), ids(iterator));
+        Assertions.assertEquals(List.of("2", "3"), loadedTokens);
+        Assertions.assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void testDepthIsCapped() {
+        pages.put("2", page("3", video("c", 70), video("d", 60)));
+        CachedPlaylist playlist = playlist(3, page("2", video("a", 90), video("b", 80)));
+
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), ids(playlist.iterator()));
+        Assertions.assertEquals(List.of("2"), loadedTokens);
+        Assertions.assertTrue(playlist.snapshot().isComplete());
+    }
+
+    @Test
+    void testReadDepthFollowsIteration() {
+        pages.put("2", page(null, video("c", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        SortKeyIterator<CachedVideo> iterator = playlist.iterator();
+        iterator.next();
+        iterator.skip();
+        Assertions.assertEquals(2, playlist.getReadDepth());
+
+        playlist.snapshot().markConsumed(1);
+        Assertions.assertEquals(2, playlist.getReadDepth());
+    }
+
+    @Test
+    void testLoadedPagesAreMergedInOrder() {
+        // a scheduled premiere can sit below older uploads in the playlist
+        pages.put("2", page(null, video("c", 85), video("d", 60)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), ids(playlist.iterator()));
+        Assertions.assertEquals(List.of("a", "c", "b", "d"), ids(playlist.iterator()));
+        assertSorted(playlist.snapshot());
+    }
+
+    @Test
+    void testNewerVideosOnDeeperPageAreReturnedOnce() {
+        pages.put("2", page("3", video("e", 85), video("f", 60)));
+        pages.put("3", page(null, video("g", 95), video("h", 50)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80), video("c", 70)));
+
+        SortKeyIterator<CachedVideo> iterator = playlist.iterator();
+        Assertions.assertEquals("a", iterator.next().getId());
+        Assertions.assertEquals(List.of("b", "c", "e", "f", "g", "h"), ids(iterator));
+        Assertions.assertEquals(List.of("g", "a", "e", "b", "c", "f", "h"), ids(playlist.iterator()));
+    }
+
+    @Test
+    void testVersionChangesWhenMergeChangesLoadedVideos() {
+        pages.put("2", page("3", video("c", 70)));
+        pages.put("3", page(null, video("d", 85)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+        long version = playlist.getVersion();
+
+        SortKeyIterator<CachedVideo> iterator = playlist.iterator();
+        iterator.next();
+        iterator.next();
+        iterator.next();
+        Assertions.assertEquals(version, playlist.getVersion());
+
+        iterator.next();
+        Assertions.assertNotEquals(version, playlist.getVersion());
+    }
+
+    @Test
+    void testConcurrentReadersShareOneLoad() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch finishLoad = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        CachedPlaylist playlist = new CachedPlaylist("UUchannel", (playlistId, pageToken, maxVideos) -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                finishLoad.await(10, SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return page(null, video("c", 70));
+        }, HeapVideoStorage.INSTANCE, 50, 10, page("2", video("a", 90), video("b", 80)), 0);
+
+        ExecutorService readers = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<String>> first = readers.submit(() -> ids(playlist.iterator()));
+            Assertions.assertTrue(loadStarted.await(10, SECONDS));
+            Future<List<String>> second = readers.submit(() -> ids(playlist.iterator()));
+
+            // the page is loaded outside the lock
+            Assertions.assertEquals(2, playlist.toPage().getVideos().size());
+            Assertions.assertThrows(TimeoutException.class, () -> second.get(100, MILLISECONDS));
+
+            finishLoad.countDown();
+            Assertions.assertEquals(List.of("a", "b", "c"), first.get(10, SECONDS));
+            Assertions.assertEquals(List.of("a", "b", "c"), second.get(10, SECONDS));
+            Assertions.assertEquals(1, loads.get());
+        } finally {
+            finishLoad.countDown();
+            readers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailedLoadIsRetried() {
+        CachedPlaylist.PageLoader failing = (playlistId, pageToken, maxVideos) -> {
+            loadedTokens.add(pageToken);
+            if (loadedTokens.size() == 1) {
+                throw new IllegalStateException("quota exceeded");
+            }
+            return page(null, video("c", 70));
+        };
+        CachedPlaylist playlist = new CachedPlaylist("UUchannel", failing, HeapVideoStorage.INSTANCE, 50, 10,
+                page("2", video("a", 90), video("b", 80)), 0);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> ids(playlist.iterator()));
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(playlist.iterator()));
+        Assertions.assertEquals(List.of("2", "2"), loadedTokens);
+    }
+
+    @Test
+    void testShiftedPageTokenDoesNotDuplicateVideos() {
+        pages.put("2", page(null, video("b", 80), video("c", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(playlist.iterator()));
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(playlist.iterator()));
+    }
+
+    @Test
+    void testTiesKeepLoadedVideosFirst() {
+        pages.put("2", page(null, video("c", 80), video("d", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), ids(playlist.iterator()));
+    }
+
+    @Test
+    void testIteratorsShareLoadedPages() {
+        pages.put("2", page(null, video("c", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        SortKeyIterator<CachedVideo> first = playlist.iterator();
+        SortKeyIterator<CachedVideo> second = playlist.iterator();
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(first));
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(second));
+        Assertions.assertEquals(List.of("2"), loadedTokens);
+    }
+
+    @Test
+    void testSnapshotDoesNotLoad() {
+        pages.put("2", page(null, video("c", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+
+        ParallelMerge.SortedRun<CachedVideo> snapshot = playlist.snapshot();
+        Assertions.assertEquals(2, snapshot.size());
+        Assertions.assertFalse(snapshot.isComplete());
+        Assertions.assertTrue(loadedTokens.isEmpty());
+
+        ids(playlist.iterator());
+        Assertions.assertTrue(playlist.snapshot().isComplete());
+        Assertions.assertEquals(2, snapshot.size());
+    }
+
+    @Test
+    void testIteratorPastDeadlineLeavesPageLoading() {
+        pages.put("2", page(null, video("c", 70)));
+        CachedPlaylist playlist = playlist(10, page("2", video("a", 90), video("b", 80)));
+        List<Runnable> queuedLoads = new ArrayList<>();
+
+        CachedPlaylist.LazyIterator first = playlist.iterator(loaded -> loaded.loadNextPage(queuedLoads::add), System.nanoTime());
+        Assertions.assertEquals(List.of("a", "b"), ids(first));
+        Assertions.assertTrue(first.isTruncated());
+        CachedPlaylist.LazyIterator second = playlist.iterator(loaded -> loaded.loadNextPage(queuedLoads::add), System.nanoTime());
+        Assertions.assertEquals(List.of("a", "b"), ids(second));
+        Assertions.assertEquals(1, queuedLoads.size());
+        Assertions.assertTrue(loadedTokens.isEmpty());
+
+        queuedLoads.forEach(Runnable::run);
+        CachedPlaylist.LazyIterator third = playlist.iterator(loaded -> loaded.loadNextPage(queuedLoads::add), System.nanoTime());
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(third));
+        Assertions.assertFalse(third.isTruncated());
+        Assertions.assertEquals(List.of("2"), loadedTokens);
+    }
+
+    private CachedPlaylist playlist(int maxDepth, PlaylistPage firstPage) {
+        CachedPlaylist.PageLoader loader = (playlistId, pageToken, maxVideos) -> {
+            loadedTokens.add(pageToken);
+            return pages.get(pageToken);
+        };
+        return new CachedPlaylist("UUchannel", loader, HeapVideoStorage.INSTANCE, 50, maxDepth, firstPage, 0);
+    }
+
+    private static void assertSorted(ParallelMerge.SortedRun<CachedVideo> run) {
+        for (int i = 1; i < run.size(); i++) {
+            Assertions.assertTrue(run.sortKey(i - 1) <= run.sortKey(i));
+        }
+    }
+
+    private static List<String> ids(SortKeyIterator<CachedVideo> iterator) {
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(video -> ids.add(video.getId()));
+        return ids;
+    }
+
+    private static PlaylistPage page(String nextPageToken, CachedVideo... videos) {
+        return new PlaylistPage(Arrays.asList(videos), nextPageToken);
+    }
+
+    private static CachedVideo video(String id, long publishedAt) {
+        return new CachedVideo(id, "channel", publishedAt, id, null, 0, 0);
+    }
+
+}
@@ -0,0 +1,120 @@
+package subbox.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+import subbox.util.SegmentStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.DeflaterOutputStream;
+
+class DiskPlaylistTierTests {
+
+    private Path file;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        file = Files.createTempFile("playlists", ".seg");
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        List<CachedVideo> videos = List.of(
+                new CachedVideo("video1", "UC_one", 4000, "First", "https://i.ytimg.com/vi/video1/default.jpg", 120, 90),
+                new CachedVideo("video2", "UC_one", 3000, "Second", null, 0, 0),
+                new CachedVideo("video3", "UC_two", 2000, "Third – ü", "https://i.ytimg.com/vi/video3/default.jpg", 120, 90),
+                new CachedVideo("video4", "UC_one", 1000, "", null, 0, 0));
+        DiskPlaylistTier tier = new DiskPlaylistTier(file, 1 << 20);
+        try {
+            Assertions.assertTrue(tier.demote("UU_one", "\"etag\"", new PlaylistPage(videos, "next-page")));
+
+            DiskPlaylistTier.Demoted demoted = tier.promote("UU_one");
+            Assertions.assertNotNull(demoted);
+            Assertions.assertEquals("\"etag\"", demoted.getETag());
+            Assertions.assertEquals("next-page", demoted.getPage().getNextPageToken());
+            Assertions.assertEquals(describe(videos), describe(demoted.getPage().getVideos()));
+
+            Assertions.assertNull(tier.promote("UU_one"));
+            Assertions.assertEquals(1L, tier.getStats().get("demotions"));
+            Assertions.assertEquals(1L, tier.getStats().get("promotions"));
+        } finally {
+            tier.close();
+        }
+    }
+
+    @Test
+    void testRoundTripWithoutNextPageToken() throws IOException {
+        List<CachedVideo> videos = List.of(new CachedVideo("video1", "UC_one", 1000, "Only", null, 0, 0));
+        DiskPlaylistTier tier = new DiskPlaylistTier(file, 1 << 20);
+        try {
+            tier.demote("UU_one", "\"etag\"", new PlaylistPage(videos, null));
+
+            DiskPlaylistTier.Demoted demoted = tier.promote("UU_one");
+            Assertions.assertNotNull(demoted);
+            Assertions.assertNull(demoted.getPage().getNextPageToken());
+            Assertions.assertEquals(describe(videos), describe(demoted.getPage().getVideos()));
+        } finally {
+            tier.close();
+        }
+    }
+
+    @Test
+    void testRoundTripOfEmptyPage() throws IOException {
+        DiskPlaylistTier tier = new DiskPlaylistTier(file, 1 << 20);
+        try {
+            tier.demote("UU_one", "\"etag\"", new PlaylistPage(List.of(), null));
+
+            DiskPlaylistTier.Demoted demoted = tier.promote("UU_one");
+            Assertions.assertNotNull(demoted);
+            Assertions.assertTrue(demoted.getPage().getVideos().isEmpty());
+        } finally {
+            tier.close();
+        }
+    }
+
+    @Test
+    void testIgnoresOtherFormatVersion() throws IOException {
+        try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+            store.put("UU_one", deflate(new byte[]{99, 0, 0}));
+        }
+
+        DiskPlaylistTier tier = new DiskPlaylistTier(file, 1 << 20);
+        try {
+            Assertions.assertNull(tier.promote("UU_one"));
+            Assertions.assertEquals(0L, tier.getStats().get("promotions"));
+            Assertions.assertEquals(0L, tier.getStats().get("failures"));
+        } finally {
+            tier.close();
+        }
+    }
+
+    private static byte[] deflate(byte[] content) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(content);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<String> describe(List<CachedVideo> videos) {
+        return videos.stream()
+                .map(video -> String.join("|", video.getId(), video.getChannelId(), String.valueOf(video.getPublishedAt()),
+                        video.getTitle(), String.valueOf(video.getThumbnailUrl()),
+                        String.valueOf(video.getThumbnailWidth()), String.valueOf(video.getThumbnailHeight())))
+                .collect(Collectors.toList());
+    }
+
+}
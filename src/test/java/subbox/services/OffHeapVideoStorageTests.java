@@ -0,0 +1,112 @@
+package subbox.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class OffHeapVideoStorageTests {
+
+    private final OffHeapVideoStorage storage = new OffHeapVideoStorage(1 << 16, 4);
+
+    @Test
+    void testStoreAndGetRoundTrip() {
+        List<CachedVideo> videos = List.of(
+                new CachedVideo("video1", "UC_channel", 2000, "First upload", "https://i.ytimg.com/vi/video1/default.jpg", 120, 90),
+                new CachedVideo("video2", "UC_channel", 1000, "Zweites Video – über 🎵", null, 0, 0));
+
+        VideoList list = storage.store(videos);
+
+        Assertions.assertEquals(2, list.size());
+        for (int i = 0; i < videos.size(); i++) {
+            Assertions.assertEquals(describe(videos.get(i)), describe(list.get(i)));
+            Assertions.assertEquals(videos.get(i).getPublishedAt(), list.getPublishedAt(i));
+        }
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> list.get(2));
+        Assertions.assertEquals(1L, storage.getStats().get("lists"));
+    }
+
+    @Test
+    void testStoreEmptyList() {
+        VideoList list = storage.store(List.of());
+
+        Assertions.assertEquals(0, list.size());
+        Assertions.assertTrue(list.toList().isEmpty());
+    }
+
+    @Test
+    void testReleaseFreesBlock() {
+        VideoList list = storage.store(List.of(video("a", 1)));
+        Assertions.assertTrue((long) storage.getStats().get("allocatedBytes") > 0);
+
+        list.release();
+
+        Assertions.assertEquals(0L, storage.getStats().get("allocatedBytes"));
+        Assertions.assertEquals(0L, storage.getStats().get("lists"));
+        Assertions.assertThrows(IllegalStateException.class, list::retain);
+    }
+
+    @Test
+    void testReaderKeepsBlockUntilReleased() {
+        VideoList list = storage.store(List.of(video("a", 1)));
+        list.retain();
+        list.release();
+
+        // a block reused by the next list would overwrite the one the reader still holds
+        storage.store(List.of(video("b", 2)));
+        Assertions.assertEquals("a", list.get(0).getId());
+
+        list.release();
+        Assertions.assertEquals(1L, storage.getStats().get("lists"));
+    }
+
+    @Test
+    void testReleasedPlaylistStaysReadable() {
+        PlaylistPage firstPage = new PlaylistPage(List.of(video("a", 3), video("b", 2), video("c", 1)), null);
+        CachedPlaylist playlist = new CachedPlaylist("UUchannel", (playlistId, pageToken, maxVideos) -> {
+            throw new AssertionError("unexpected page load");
+        }, storage, 50, 10, firstPage, 0);
+
+        CachedPlaylist.LazyIterator reader = playlist.iterator();
+        Assertions.assertEquals("a", reader.next().getId());
+        playlist.release();
+        storage.store(List.of(video("x", 9), video("y", 8), video("z", 7)));
+
+        Assertions.assertEquals(List.of("b", "c"), ids(reader));
+        Assertions.assertEquals(List.of("a", "b", "c"), ids(playlist.iterator()));
+
+        reader.close();
+        Assertions.assertEquals(1L, storage.getStats().get("lists"));
+    }
+
+    @Test
+    void testFallsBackToHeapWhenFull() {
+        OffHeapVideoStorage small = new OffHeapVideoStorage(64, 1);
+
+        VideoList list = small.store(List.of(video("a", 1), video("b", 2)));
+
+        Assertions.assertEquals("b", list.get(1).getId());
+        Assertions.assertEquals(1L, small.getStats().get("heapFallbacks"));
+        Assertions.assertEquals(0L, small.getStats().get("lists"));
+    }
+
+    private static List<String> ids(CachedPlaylist.LazyIterator iterator) {
+        List<String> ids = new ArrayList<>();
+        iterator.forEachRemaining(video -> ids.add(video.getId()));
+        return ids;
+    }
+
+    private static String describe(CachedVideo video) {
+        return String.join("|", video.getId(), video.getChannelId(), String.valueOf(video.getPublishedAt()),
+                video.getTitle(), String.valueOf(video.getThumbnailUrl()),
+                String.valueOf(video.getThumbnailWidth()), String.valueOf(video.getThumbnailHeight()));
+    }
+
+    private static CachedVideo video(String id, long publishedAt) {
+        return new CachedVideo(id, "UC_channel", publishedAt, "Title " + id, null, 0, 0);
+    }
+
+}
@@ -0,0 +1,140 @@
+package subbox.services;
+
+import com.google.api.services.youtube.model.Channel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import subbox.model.PlaylistPage;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toMap;
+
+class RefreshingVideoCacheTests {
+
+    private static final String POISONED_PLAYLIST_ID = "UUpoisoned";
+
+    private final List<List<String>> probes = new CopyOnWriteArrayList<>();
+    private final RefreshingVideoCache cache = new RefreshingVideoCache(new FakeYouTubeService(), new WebSubSubscriber());
+    private final List<String> playlistIds = new ArrayList<>();
+    private volatile boolean failing;
+
+    @BeforeEach
+    void initCache() throws Exception {
+        cache.setEvictionThreshold(Duration.ofDays(1));
+        cache.setUpdatePeriod(Duration.ofDays(1));
+        cache.setInitialVideosPerPlaylist(20);
+        cache.setVideosPerPlaylist(100);
+        cache.setPushFallbackPollPeriod(Duration.ofDays(1));
+        cache.setPushMinRefreshInterval(Duration.ofMinutes(1));
+        cache.setProbeParallelism(1);
+        cache.setMaxProbeFailures(3);
+        cache.setStorage("heap");
+        cache.setDiskTierEnabled(false);
+        cache.init();
+
+        for (int i = 0; i < 149; i++) {
+            playlistIds.add("UU" + i);
+        }
+        playlistIds.add(POISONED_PLAYLIST_ID);
+        cache.get(playlistIds).get();
+        probes.clear();
+        failing = true;
+    }
+
+    @AfterEach
+    void destroyCache() {
+        cache.destroy();
+    }
+
+    @Test
+    void testKeepsETagsOfColdLoads() throws Exception {
+        failing = false;
+        for (String playlistId : playlistIds) {
+            long deadline = System.nanoTime() + SECONDS.toNanos(10);
+            while (!"etag".equals(cache.getETag(playlistId)) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            Assertions.assertEquals("etag", cache.getETag(playlistId));
+        }
+
+        Assertions.assertEquals(0, cache.refresh(ZonedDateTime.now().plusDays(1)));
+    }
+
+    @Test
+    void testRetriesFailedBatch() {
+        cache.refresh(ZonedDateTime.now().plusDays(1));
+        cache.refresh(ZonedDateTime.now().plusDays(1));
+
+        Assertions.assertEquals(2, poisonedProbes());
+    }
+
+    @Test
+    void testSkipsRepeatedlyFailingBatch() {
+        for (int i = 0; i < 4; i++) {
+            cache.refresh(ZonedDateTime.now().plusDays(1));
+        }
+
+        Assertions.assertEquals(3, poisonedProbes());
+        Assertions.assertEquals(new HashSet<>(playlistIds), probedPlaylistIds());
+    }
+
+    @Test
+    void testNewSweepRetriesSkippedBatch() {
+        for (int i = 0; i < 5; i++) {
+            cache.refresh(ZonedDateTime.now().plusDays(1));
+        }
+
+        Assertions.assertEquals(4, poisonedProbes());
+    }
+
+    private long poisonedProbes() {
+        return probes.stream()
+                .filter(batch -> batch.contains(POISONED_PLAYLIST_ID))
+                .count();
+    }
+
+    private Set<String> probedPlaylistIds() {
+        Set<String> probed = new HashSet<>();
+        probes.forEach(probed::addAll);
+        return probed;
+    }
+
+    private class FakeYouTubeService implements YouTubeService {
+        @Override
+        public Optional<Channel> getChannel(String channelId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public List<Channel> getChannels(List<String> channelIds) {
+            return List.of();
+        }
+
+        @Override
+        public Map<String, String> getPlaylistETags(List<String> playlistIds) {
+            probes.add(List.copyOf(playlistIds));
+            if (failing && playlistIds.contains(POISONED_PLAYLIST_ID)) {
+                throw new IllegalArgumentException("Invalid playlist ID");
+            }
+            return playlistIds.stream().collect(toMap(Function.identity(), playlistId -> "etag"));
+        }
+
+        @Override
+        public PlaylistPage getVideos(String playlistId, String pageToken, long maxVideos) {
+            return new PlaylistPage(List.of(), null);
+        }
+    }
+
+}
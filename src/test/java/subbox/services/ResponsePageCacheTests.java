@@ -0,0 +1,192 @@
+package subbox.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+import subbox.model.PlaylistPage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class ResponsePageCacheTests {
+
+    private static final List<String> CHANNEL_IDS = List.of("UCchannel");
+
+    private final ResponsePageCache cache = new ResponsePageCache();
+    private final AtomicInteger renders = new AtomicInteger();
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @BeforeEach
+    void initCache() {
+        cache.setMaximumBytes(1 << 20);
+        cache.init();
+    }
+
+    @AfterEach
+    void shutDownExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testServesCachedPage() {
+        List<CachedPlaylist> playlists = List.of(playlist());
+
+        byte[] first = get(playlists, renderer("page"));
+        byte[] second = get(playlists, renderer("other"));
+
+        Assertions.assertArrayEquals(first, second);
+        Assertions.assertEquals(1, renders.get());
+    }
+
+    @Test
+    void testRendersAgainForNewPlaylistVersion() {
+        get(List.of(playlist()), renderer("old"));
+        byte[] body = get(List.of(playlist()), renderer("new"));
+
+        Assertions.assertEquals("new", new String(body, StandardCharsets.UTF_8));
+        Assertions.assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testRendersAgainWhenDeeperPageChangesLoadedVideos() {
+        CachedPlaylist playlist = new CachedPlaylist("UUchannel", (playlistId, pageToken, maxVideos) ->
+                new PlaylistPage(List.of(video("c", 85)), null), HeapVideoStorage.INSTANCE, 50, 100,
+                new PlaylistPage(List.of(video("a", 90), video("b", 80)), "2"), 0);
+        List<CachedPlaylist> playlists = List.of(playlist);
+        get(playlists, renderer("old"));
+        playlist.iterator().forEachRemaining(video -> {
+        });
+
+        byte[] body = get(playlists, renderer("new"));
+
+        Assertions.assertEquals("new", new String(body, StandardCharsets.UTF_8));
+        Assertions.assertEquals(2, renders.get());
+    }
+
+    @Test
+    void testDoesNotCacheIncompletePage() {
+        List<CachedPlaylist> playlists = List.of(playlist());
+
+        get(playlists, renderer("incomplete"), false);
+        byte[] body = get(playlists, renderer("complete"));
+
+        Assertions.assertEquals("complete", new String(body, StandardCharsets.UTF_8));
+        Assertions.assertEquals(2, renders.get());
+        Assertions.assertEquals(1L, cache.getStats().get("entries"));
+    }
+
+    @Test
+    void testDoesNotShareIncompleteRender() throws Exception {
+        List<CachedPlaylist> playlists = List.of(playlist());
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<byte[]> leader = executor.submit(() -> get(playlists, () -> {
+            rendering.countDown();
+            await(release);
+            return renderer("incomplete").get();
+        }, false));
+        Assertions.assertTrue(rendering.await(10, SECONDS));
+        Future<byte[]> follower = executor.submit(() -> get(playlists, renderer("complete")));
+        while (collapsedRenders() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Assertions.assertEquals("incomplete", new String(leader.get(10, SECONDS), StandardCharsets.UTF_8));
+        Assertions.assertEquals("complete", new String(follower.get(10, SECONDS), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCollapsesConcurrentMisses() throws Exception {
+        List<CachedPlaylist> playlists = List.of(playlist());
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<byte[]> leader = executor.submit(() -> get(playlists, () -> {
+            rendering.countDown();
+            await(release);
+            return renderer("page").get();
+        }));
+        Assertions.assertTrue(rendering.await(10, SECONDS));
+        Future<byte[]> follower = executor.submit(() -> get(playlists, renderer("other")));
+        while (collapsedRenders() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Assertions.assertEquals("page", new String(leader.get(10, SECONDS), StandardCharsets.UTF_8));
+        Assertions.assertEquals("page", new String(follower.get(10, SECONDS), StandardCharsets.UTF_8));
+        Assertions.assertEquals(1, renders.get());
+    }
+
+    @Test
+    void testDoesNotShareRenderOfOtherVersions() throws Exception {
+        CountDownLatch rendering = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<byte[]> leader = executor.submit(() -> get(List.of(playlist()), () -> {
+            rendering.countDown();
+            await(release);
+            return renderer("old").get();
+        }));
+        Assertions.assertTrue(rendering.await(10, SECONDS));
+        Future<byte[]> follower = executor.submit(() -> get(List.of(playlist()), renderer("new")));
+        while (collapsedRenders() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        Assertions.assertEquals("old", new String(leader.get(10, SECONDS), StandardCharsets.UTF_8));
+        Assertions.assertEquals("new", new String(follower.get(10, SECONDS), StandardCharsets.UTF_8));
+    }
+
+    private byte[] get(List<CachedPlaylist> playlists, Supplier<byte[]> renderer) {
+        return get(playlists, renderer, true);
+    }
+
+    private byte[] get(List<CachedPlaylist> playlists, Supplier<byte[]> renderer, boolean complete) {
+        return cache.get(CHANNEL_IDS, 20, 0, FeedFormat.JSON, ResponsePageCache.Encoding.IDENTITY, playlists, renderer, () -> complete);
+    }
+
+    private Supplier<byte[]> renderer(String body) {
+        return () -> {
+            renders.incrementAndGet();
+            return body.getBytes(StandardCharsets.UTF_8);
+        };
+    }
+
+    private long collapsedRenders() {
+        return ((Number) ((Map<?, ?>) cache.getStats().get("renders")).get("collapsed")).longValue();
+    }
+
+    private static CachedPlaylist playlist() {
+        return new CachedPlaylist("UUchannel", (playlistId, pageToken, maxVideos) -> {
+            throw new AssertionError();
+        }, HeapVideoStorage.INSTANCE, 50, 100, new PlaylistPage(List.of(), null), 0);
+    }
+
+    private static CachedVideo video(String id, long publishedAt) {
+        return new CachedVideo(id, "UCchannel", publishedAt, id, null, 0, 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            Assertions.assertTrue(latch.await(10, SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
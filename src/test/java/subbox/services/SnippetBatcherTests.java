@@ -0,0 +1,127 @@
+package subbox.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+class SnippetBatcherTests {
+
+    private static final Duration LONG_LINGER = Duration.ofHours(1);
+    private static final Duration SHORT_LINGER = Duration.ofMillis(10);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<List<String>> batches = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void shutDownScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testDispatchesFullBatches() throws Exception {
+        SnippetBatcher batcher = new SnippetBatcher(3, LONG_LINGER, recording(this::videos), scheduler);
+
+        CompletableFuture<List<CachedVideo>> first = batcher.fetch(List.of("a", "b"));
+        CompletableFuture<List<CachedVideo>> second = batcher.fetch(List.of("c", "d", "e", "f", "g"));
+
+        Assertions.assertEquals(List.of(List.of("a", "b", "c"), List.of("d", "e", "f")), batches);
+        Assertions.assertEquals(List.of("a", "b"), ids(first.get(1, SECONDS)));
+        Assertions.assertFalse(second.isDone());
+    }
+
+    @Test
+    void testLingerFlushesPartialBatch() throws Exception {
+        SnippetBatcher batcher = new SnippetBatcher(50, SHORT_LINGER, recording(this::videos), scheduler);
+
+        CompletableFuture<List<CachedVideo>> first = batcher.fetch(List.of("a", "b"));
+        CompletableFuture<List<CachedVideo>> second = batcher.fetch(List.of("c"));
+
+        Assertions.assertEquals(List.of("a", "b"), ids(first.get(1, SECONDS)));
+        Assertions.assertEquals(List.of("c"), ids(second.get(1, SECONDS)));
+        Assertions.assertEquals(List.of(List.of("a", "b", "c")), batches);
+    }
+
+    @Test
+    void testSharesInFlightIds() throws Exception {
+        SnippetBatcher batcher = new SnippetBatcher(3, LONG_LINGER, recording(this::videos), scheduler);
+
+        CompletableFuture<List<CachedVideo>> first = batcher.fetch(List.of("a", "b"));
+        CompletableFuture<List<CachedVideo>> second = batcher.fetch(List.of("b", "c"));
+
+        Assertions.assertEquals(List.of(List.of("a", "b", "c")), batches);
+        Assertions.assertEquals(List.of("a", "b"), ids(first.get(1, SECONDS)));
+        Assertions.assertEquals(List.of("b", "c"), ids(second.get(1, SECONDS)));
+    }
+
+    @Test
+    void testOmitsVideosMissingFromResponse() throws Exception {
+        SnippetBatcher batcher = new SnippetBatcher(2, LONG_LINGER, recording(ids -> videos(ids.subList(1, ids.size()))), scheduler);
+
+        Assertions.assertEquals(List.of("b"), ids(batcher.fetch(List.of("a", "b")).get(1, SECONDS)));
+    }
+
+    @Test
+    void testFailedFetchFailsBatch() {
+        IllegalStateException failure = new IllegalStateException("videos().list failed");
+        SnippetBatcher batcher = new SnippetBatcher(2, LONG_LINGER, recording(ids -> CompletableFuture.failedFuture(failure)), scheduler);
+
+        CompletableFuture<List<CachedVideo>> result = batcher.fetch(List.of("a", "b"));
+
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> result.get(1, SECONDS));
+        Assertions.assertSame(failure, exception.getCause());
+    }
+
+    @Test
+    void testThrowingFetcherFailsBatchInsteadOfHanging() throws Exception {
+        IllegalStateException failure = new IllegalStateException("executor rejected the request");
+        SnippetBatcher batcher = new SnippetBatcher(50, SHORT_LINGER, recording(ids -> {
+            if (ids.contains("bad")) {
+                throw failure;
+            }
+            return videos(ids);
+        }), scheduler);
+
+        CompletableFuture<List<CachedVideo>> failed = batcher.fetch(List.of("bad"));
+        ExecutionException exception = Assertions.assertThrows(ExecutionException.class, () -> failed.get(1, SECONDS));
+        Assertions.assertSame(failure, exception.getCause());
+
+        Assertions.assertEquals(List.of("good"), ids(batcher.fetch(List.of("good")).get(1, SECONDS)));
+    }
+
+    private Function<List<String>, CompletableFuture<List<CachedVideo>>> recording(Function<List<String>, CompletableFuture<List<CachedVideo>>> fetcher) {
+        return ids -> {
+            batches.add(List.copyOf(ids));
+            return fetcher.apply(ids);
+        };
+    }
+
+    private CompletableFuture<List<CachedVideo>> videos(List<String> ids) {
+        return CompletableFuture.completedFuture(ids.stream()
+                .map(SnippetBatcherTests::video)
+                .collect(toList()));
+    }
+
+    private static CachedVideo video(String id) {
+        return new CachedVideo(id, "channel", 0, "title " + id, null, 0, 0);
+    }
+
+    private static List<String> ids(List<CachedVideo> videos) {
+        return videos.stream()
+                .map(CachedVideo::getId)
+                .collect(toList());
+    }
+
+}
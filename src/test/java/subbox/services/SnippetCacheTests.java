@@ -0,0 +1,76 @@
+package subbox.services;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class SnippetCacheTests {
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final Ticker ticker = nanos::get;
+    private final SnippetCache cache = new SnippetCache(100, Duration.ofHours(6), Duration.ofHours(1), ticker);
+
+    @Test
+    void testHitRequiresMatchingTitle() {
+        CachedVideo video = video("a", "Title");
+        cache.putAll(List.of("a"), List.of("Title"), List.of(video));
+
+        Assertions.assertSame(video, cache.get("a", "Title"));
+        Assertions.assertNull(cache.get("a", "Edited title"));
+        Assertions.assertNull(cache.get("b", "Title"));
+    }
+
+    @Test
+    void testEntriesExpire() {
+        cache.putAll(List.of("a"), List.of("Title"), List.of(video("a", "Title")));
+
+        nanos.addAndGet(Duration.ofHours(6).toNanos());
+
+        Assertions.assertNull(cache.get("a", "Title"));
+    }
+
+    @Test
+    void testUnreturnedVideosAreMissing() {
+        cache.putAll(List.of("a", "b"), List.of("Title", "Private video"), List.of(video("a", "Title")));
+
+        Assertions.assertFalse(cache.isMissing("a", "Title"));
+        Assertions.assertTrue(cache.isMissing("b", "Private video"));
+        Assertions.assertNull(cache.get("b", "Private video"));
+    }
+
+    @Test
+    void testMissingEntriesIgnoreChangedTitles() {
+        cache.putAll(List.of("b"), List.of("Private video"), List.of());
+
+        Assertions.assertFalse(cache.isMissing("b", "Now public"));
+    }
+
+    @Test
+    void testMissingEntriesExpireSooner() {
+        cache.putAll(List.of("a", "b"), List.of("Title", "Private video"), List.of(video("a", "Title")));
+
+        nanos.addAndGet(Duration.ofHours(1).toNanos());
+
+        Assertions.assertFalse(cache.isMissing("b", "Private video"));
+        Assertions.assertNotNull(cache.get("a", "Title"));
+    }
+
+    @Test
+    void testReturnedVideoClearsMissingEntry() {
+        cache.putAll(List.of("b"), List.of("Private video"), List.of());
+        cache.putAll(List.of("b"), List.of("Private video"), List.of(video("b", "Private video")));
+
+        Assertions.assertFalse(cache.isMissing("b", "Private video"));
+        Assertions.assertNotNull(cache.get("b", "Private video"));
+    }
+
+    private static CachedVideo video(String id, String title) {
+        return new CachedVideo(id, "channel", 0, title, null, 0, 0);
+    }
+
+}
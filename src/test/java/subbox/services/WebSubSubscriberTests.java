@@ -0,0 +1,161 @@
+package subbox.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class WebSubSubscriberTests {
+
+    private static final String SECRET = "hub-secret";
+    private static final String TOPIC = "https://www.youtube.com/xml/feeds/videos.xml?channel_id=UCchannel";
+    private static final String NOTIFICATION = "<feed xmlns=\"http://www.w3.org/2005/Atom\" xmlns:yt=\"http://www.youtube.com/xml/schemas/2015\">"
+            + "<entry><yt:videoId>video</yt:videoId><yt:channelId>UCchannel</yt:channelId></entry></feed>";
+
+    private final BlockingQueue<Map<String, String>> hubRequests = new LinkedBlockingQueue<>();
+    private final WebSubSubscriber subscriber = new WebSubSubscriber();
+    private HttpServer hub;
+
+    @BeforeEach
+    void startHub() throws Exception {
+        hub = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        hub.createContext("/subscribe", exchange -> {
+            hubRequests.add(parseForm(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)));
+            exchange.sendResponseHeaders(202, -1);
+            exchange.close();
+        });
+        hub.start();
+
+        subscriber.setEnabled(true);
+        subscriber.setHubUrl("http://127.0.0.1:" + hub.getAddress().getPort() + "/subscribe");
+        subscriber.setCallbackUrl("https://subbox.example/websub/callback");
+        subscriber.setSecret(SECRET);
+        subscriber.setLease(Duration.ofDays(5));
+        subscriber.setRenewBefore(Duration.ofHours(12));
+        subscriber.setRetryInterval(Duration.ofHours(1));
+        subscriber.init();
+    }
+
+    @AfterEach
+    void stopHub() {
+        subscriber.setEnabled(false);
+        hub.stop(0);
+    }
+
+    @Test
+    void testRefusesToStartWithoutSecret() {
+        subscriber.setSecret("");
+        Assertions.assertThrows(IllegalStateException.class, subscriber::init);
+    }
+
+    @Test
+    void testSubscribeSendsSecretToHub() throws Exception {
+        subscriber.subscribe("UUchannel");
+
+        Map<String, String> request = hubRequests.poll(10, SECONDS);
+        Assertions.assertNotNull(request);
+        Assertions.assertEquals("subscribe", request.get("hub.mode"));
+        Assertions.assertEquals(TOPIC, request.get("hub.topic"));
+        Assertions.assertEquals("https://subbox.example/websub/callback", request.get("hub.callback"));
+        Assertions.assertEquals(SECRET, request.get("hub.secret"));
+        Assertions.assertEquals(String.valueOf(Duration.ofDays(5).getSeconds()), request.get("hub.lease_seconds"));
+    }
+
+    @Test
+    void testVerifiesOnlyWantedTopics() throws Exception {
+        Assertions.assertFalse(subscriber.verifyIntent("subscribe", TOPIC, 3600L));
+
+        subscriber.subscribe("UUchannel");
+        Assertions.assertNotNull(hubRequests.poll(10, SECONDS));
+        Assertions.assertFalse(subscriber.isPushCovered("UUchannel"));
+
+        Assertions.assertTrue(subscriber.verifyIntent("subscribe", TOPIC, 3600L));
+        Assertions.assertTrue(subscriber.isPushCovered("UUchannel"));
+
+        subscriber.unsubscribe("UUchannel");
+        Map<String, String> request = hubRequests.poll(10, SECONDS);
+        Assertions.assertNotNull(request);
+        Assertions.assertEquals("unsubscribe", request.get("hub.mode"));
+        Assertions.assertFalse(subscriber.verifyIntent("subscribe", TOPIC, 3600L));
+        Assertions.assertTrue(subscriber.verifyIntent("unsubscribe", TOPIC, null));
+        Assertions.assertFalse(subscriber.isPushCovered("UUchannel"));
+    }
+
+    @Test
+    void testRetriesUnverifiedSubscription() throws Exception {
+        subscriber.subscribe("UUchannel");
+        Assertions.assertNotNull(hubRequests.poll(10, SECONDS));
+
+        subscriber.renewLeases(List.of("UUchannel"));
+        Assertions.assertNull(hubRequests.poll(200, MILLISECONDS));
+
+        subscriber.setRetryInterval(Duration.ZERO);
+        Thread.sleep(5);
+        subscriber.renewLeases(List.of("UUchannel"));
+        Map<String, String> request = hubRequests.poll(10, SECONDS);
+        Assertions.assertNotNull(request);
+        Assertions.assertEquals("subscribe", request.get("hub.mode"));
+        Assertions.assertEquals(TOPIC, request.get("hub.topic"));
+
+        Assertions.assertTrue(subscriber.verifyIntent("subscribe", TOPIC, null));
+        subscriber.renewLeases(List.of("UUchannel"));
+        Assertions.assertNull(hubRequests.poll(200, MILLISECONDS));
+    }
+
+    @Test
+    void testAcceptsSignedNotification() throws Exception {
+        Set<String> playlistIds = subscriber.parseNotification(NOTIFICATION, sign(NOTIFICATION, SECRET));
+
+        Assertions.assertEquals(Set.of("UUchannel"), playlistIds);
+    }
+
+    @Test
+    void testRejectsUnsignedNotification() {
+        Assertions.assertTrue(subscriber.parseNotification(NOTIFICATION, null).isEmpty());
+    }
+
+    @Test
+    void testRejectsNotificationWithWrongSignature() throws Exception {
+        Assertions.assertTrue(subscriber.parseNotification(NOTIFICATION, sign(NOTIFICATION, "other-secret")).isEmpty());
+        Assertions.assertTrue(subscriber.parseNotification(NOTIFICATION + " ", sign(NOTIFICATION, SECRET)).isEmpty());
+        Assertions.assertTrue(subscriber.parseNotification(NOTIFICATION, "sha1=zz").isEmpty());
+    }
+
+    private static String sign(String body, String secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA1"));
+        StringBuilder signature = new StringBuilder("sha1=");
+        for (byte b : mac.doFinal(body.getBytes(StandardCharsets.UTF_8))) {
+            signature.append(String.format("%02x", b));
+        }
+        return signature.toString();
+    }
+
+    private static Map<String, String> parseForm(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            int separator = pair.indexOf('=');
+            form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+        return form;
+    }
+
+}
@@ -0,0 +1,143 @@
+package subbox.services;
+
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.google.api.services.youtube.model.VideoListResponse;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.model.CachedVideo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+class YouTubeResponseParserTests {
+
+    @Test
+    void testParsePlaylistItems() throws IOException {
+        YouTubeResponseParser.VideoIdPage page = YouTubeResponseParser.parsePlaylistItems(fixture("playlist-items.json"));
+
+        Assertions.assertEquals(List.of("video1", "video2"), page.videoIds);
+        Assertions.assertEquals(List.of("First upload", "Second upload"), page.titles);
+        Assertions.assertEquals("CAIQAA", page.nextPageToken);
+    }
+
+    @Test
+    void testParseEmptyPlaylistItems() throws IOException {
+        YouTubeResponseParser.VideoIdPage page = YouTubeResponseParser.parsePlaylistItems(fixture("empty-page.json"));
+
+        Assertions.assertTrue(page.videoIds.isEmpty());
+        Assertions.assertTrue(page.titles.isEmpty());
+        Assertions.assertNull(page.nextPageToken);
+    }
+
+    @Test
+    void testParseVideos() throws IOException {
+        List<CachedVideo> videos = YouTubeResponseParser.parseVideos(fixture("videos.json"));
+
+        Assertions.assertEquals(2, videos.size());
+        CachedVideo first = videos.get(0);
+        Assertions.assertEquals("video1", first.getId());
+        Assertions.assertEquals("UC_channel", first.getChannelId());
+        Assertions.assertEquals("First upload", first.getTitle());
+        Assertions.assertEquals(OffsetDateTime.parse("2019-03-01T10:00:00.000Z").toInstant().toEpochMilli(), first.getPublishedAt());
+        Assertions.assertEquals("https://i.ytimg.com/vi/video1/default.jpg", first.getThumbnailUrl());
+        Assertions.assertEquals(120, first.getThumbnailWidth());
+        Assertions.assertEquals(90, first.getThumbnailHeight());
+    }
+
+    @Test
+    void testParseVideoWithoutThumbnails() throws IOException {
+        CachedVideo video = YouTubeResponseParser.parseVideos(fixture("videos.json")).get(1);
+
+        Assertions.assertEquals("video2", video.getId());
+        Assertions.assertEquals(OffsetDateTime.parse("2019-03-02T09:00:00Z").toInstant().toEpochMilli(), video.getPublishedAt());
+        Assertions.assertNull(video.getThumbnailUrl());
+        Assertions.assertEquals(0, video.getThumbnailWidth());
+        Assertions.assertEquals(0, video.getThumbnailHeight());
+    }
+
+    @Test
+    void testSkipsVideoWithoutPublishedAt() throws IOException {
+        List<CachedVideo> videos = YouTubeResponseParser.parseVideos(fixture("videos.json"));
+
+        Assertions.assertTrue(videos.stream().noneMatch(video -> video.getId().equals("video3")));
+    }
+
+    @Test
+    void testParseVideosWithoutItems() throws IOException {
+        Assertions.assertTrue(YouTubeResponseParser.parseVideos(json("{\"kind\": \"youtube#videoListResponse\", \"pageInfo\": {}}")).isEmpty());
+        Assertions.assertTrue(YouTubeResponseParser.parseVideos(fixture("empty-page.json")).isEmpty());
+    }
+
+    @Test
+    void testMalformedPublishedAtFails() {
+        InputStream content = json("{\"items\": [{\"id\": \"v\", \"snippet\": {\"channelId\": \"c\", \"title\": \"t\", \"publishedAt\": \"yesterday\"}}]}");
+
+        Assertions.assertThrows(IOException.class, () -> YouTubeResponseParser.parseVideos(content));
+    }
+
+    @Test
+    void testMalformedResponseFails() {
+        Assertions.assertThrows(IOException.class, () -> YouTubeResponseParser.parseVideos(json("[]")));
+        Assertions.assertThrows(IOException.class, () -> YouTubeResponseParser.parsePlaylistItems(json("{\"items\": [1]}")));
+    }
+
+    @Test
+    void testModelParserMatchesStreamingParser() throws IOException {
+        List<CachedVideo> streamed = YouTubeResponseParser.parseVideos(fixture("videos.json"));
+        List<CachedVideo> modelled = YouTubeServiceImpl.toCachedVideos(model("videos.json", VideoListResponse.class));
+
+        Assertions.assertEquals(describe(streamed), describe(modelled));
+        Assertions.assertTrue(YouTubeServiceImpl.toCachedVideos(model("empty-page.json", VideoListResponse.class)).isEmpty());
+    }
+
+    @Test
+    void testModelPlaylistItemsMatchStreamingParser() throws IOException {
+        for (String name : List.of("playlist-items.json", "empty-page.json")) {
+            YouTubeResponseParser.VideoIdPage streamed = YouTubeResponseParser.parsePlaylistItems(fixture(name));
+            YouTubeResponseParser.VideoIdPage modelled =
+                    YouTubeServiceImpl.toVideoIdPage(model(name, PlaylistItemListResponse.class));
+
+            Assertions.assertEquals(streamed.videoIds, modelled.videoIds, name);
+            Assertions.assertEquals(streamed.titles, modelled.titles, name);
+            Assertions.assertEquals(streamed.nextPageToken, modelled.nextPageToken, name);
+        }
+    }
+
+    @Test
+    void testParsePlaylistETags() throws IOException {
+        Map<String, String> eTags = YouTubeResponseParser.parsePlaylistETags(fixture("playlists.json"));
+
+        Assertions.assertEquals(Map.of("UU_one", "\"playlist-1\"", "UU_two", "\"playlist-2\""), eTags);
+    }
+
+    private static InputStream fixture(String name) {
+        InputStream content = YouTubeResponseParserTests.class.getResourceAsStream(name);
+        Assertions.assertNotNull(content, name);
+        return content;
+    }
+
+    private static <T> T model(String name, Class<T> type) throws IOException {
+        return JacksonFactory.getDefaultInstance().fromInputStream(fixture(name), type);
+    }
+
+    private static List<String> describe(List<CachedVideo> videos) {
+        Function<CachedVideo, String> description = video -> String.join("|", video.getId(), video.getChannelId(),
+                String.valueOf(video.getPublishedAt()), video.getTitle(), String.valueOf(video.getThumbnailUrl()),
+                String.valueOf(video.getThumbnailWidth()), String.valueOf(video.getThumbnailHeight()));
+        return videos.stream().map(description).collect(toList());
+    }
+
+    private static InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(UTF_8));
+    }
+
+}
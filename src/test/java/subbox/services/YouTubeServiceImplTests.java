@@ -0,0 +1,56 @@
+package subbox.services;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import subbox.util.ApiKeyPool;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+class YouTubeServiceImplTests {
+
+    @Test
+    void testServerErrorsAreBreakerFailures() {
+        Assertions.assertTrue(YouTubeServiceImpl.isBreakerFailure(responseException(500)));
+        Assertions.assertTrue(YouTubeServiceImpl.isBreakerFailure(responseException(503)));
+    }
+
+    @Test
+    void testClientErrorsAreNotBreakerFailures() {
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(responseException(400)));
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(responseException(403)));
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(responseException(404)));
+    }
+
+    @Test
+    void testTransportErrorsAreBreakerFailures() {
+        Assertions.assertTrue(YouTubeServiceImpl.isBreakerFailure(new IOException("Connection reset")));
+        Assertions.assertTrue(YouTubeServiceImpl.isBreakerFailure(new SocketTimeoutException("Read timed out")));
+        Assertions.assertTrue(YouTubeServiceImpl.isBreakerFailure(new TimeoutException()));
+    }
+
+    @Test
+    void testOtherErrorsAreNotBreakerFailures() {
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(new JsonParseException(null, "Malformed response")));
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(new IllegalArgumentException()));
+        Assertions.assertFalse(YouTubeServiceImpl.isBreakerFailure(exhaustedException()));
+    }
+
+    private static GoogleJsonResponseException responseException(int statusCode) {
+        return new GoogleJsonResponseException(new HttpResponseException.Builder(statusCode, null, new HttpHeaders()), null);
+    }
+
+    private static ApiKeyPool.ExhaustedException exhaustedException() {
+        ApiKeyPool pool = new ApiKeyPool(List.of("key"), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        pool.suspend("key", Duration.ofHours(1));
+        return Assertions.assertThrows(ApiKeyPool.ExhaustedException.class, pool::acquire);
+    }
+
+}
@@ -0,0 +1,73 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+class ApiKeyPoolTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final ApiKeyPool pool = new ApiKeyPool(List.of("first", "second"), Duration.ofSeconds(10), Duration.ofSeconds(25), now::get);
+
+    @Test
+    void testSpreadsLoadAcrossKeys() {
+        String first = pool.acquire();
+        String second = pool.acquire();
+        Assertions.assertNotEquals(first, second);
+
+        pool.release(first, true);
+        pool.release(second, true);
+        Assertions.assertEquals(first, pool.acquire());
+        Assertions.assertEquals(second, pool.acquire());
+    }
+
+    @Test
+    void testPrefersKeysWithFewerRequestsInFlight() {
+        String busy = pool.acquire();
+        String idle = pool.acquire();
+        pool.release(idle, true);
+        pool.acquire();
+        pool.release(busy, true);
+        pool.acquire();
+        pool.release(idle, true);
+
+        Assertions.assertEquals(idle, pool.acquire());
+    }
+
+    @Test
+    void testBacksOffExponentially() {
+        pool.backOff("first");
+        Assertions.assertEquals("second", pool.acquire());
+        Assertions.assertEquals("second", pool.acquire());
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        Assertions.assertEquals("first", pool.acquire());
+
+        pool.backOff("first");
+        now.addAndGet(Duration.ofSeconds(19).toNanos());
+        Assertions.assertEquals("second", pool.acquire());
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assertions.assertEquals("first", pool.acquire());
+    }
+
+    @Test
+    void testThrowsWhenAllKeysSuspended() {
+        pool.suspend("first", Duration.ofHours(1));
+        pool.backOff("second");
+        Assertions.assertThrows(ApiKeyPool.ExhaustedException.class, pool::acquire);
+
+        pool.resetUsage();
+        Assertions.assertDoesNotThrow(pool::acquire);
+    }
+
+    @Test
+    void testMasksKeysInUsage() {
+        ApiKeyPool pool = new ApiKeyPool(List.of("AIzaSyExampleKey1234"), Duration.ofSeconds(1), Duration.ofSeconds(1));
+        pool.acquire();
+        Assertions.assertEquals(1L, pool.getUsage().get("AIza****1234").get("units"));
+    }
+
+}
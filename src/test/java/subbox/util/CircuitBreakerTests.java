@@ -0,0 +1,129 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CircuitBreakerTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 3, Duration.ofSeconds(10), 2,
+            e -> !(e instanceof IllegalArgumentException), now::get);
+
+    @Test
+    void testOpensAfterConsecutiveFailures() {
+        fail();
+        fail();
+        succeed();
+        fail();
+        fail();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> breaker.call(() -> "rejected"));
+    }
+
+    @Test
+    void testClosesAfterSuccessfulProbes() {
+        open();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        succeed();
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        succeed();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testReopensOnFailedProbe() {
+        open();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        fail();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> breaker.call(() -> "rejected"));
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void testLimitsConcurrentProbes() {
+        open();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        breaker.call(() -> {
+            breaker.call(() -> {
+                Assertions.assertThrows(CircuitBreaker.OpenException.class, () -> breaker.call(() -> "rejected"));
+                return null;
+            });
+            return null;
+        });
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testIgnoresNonFailures() {
+        fail();
+        fail();
+        ignore();
+        ignore();
+        ignore();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void testIgnoredProbeFreesItsSlot() {
+        open();
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        ignore();
+        ignore();
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        succeed();
+        succeed();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void testTestsCauseOfCheckedExceptions() {
+        CircuitBreaker ioBreaker = new CircuitBreaker("io", 1, Duration.ofSeconds(10), 1,
+                e -> e instanceof IOException, now::get);
+
+        Assertions.assertThrows(RuntimeException.class, () -> ioBreaker.call(() -> {
+            throw new IOException();
+        }));
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, ioBreaker.getState());
+    }
+
+    private void open() {
+        fail();
+        fail();
+        fail();
+    }
+
+    private void succeed() {
+        Assertions.assertEquals("ok", breaker.call(() -> "ok"));
+    }
+
+    private void ignore() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> breaker.call(() -> {
+            throw new IllegalArgumentException();
+        }));
+    }
+
+    private void fail() {
+        Assertions.assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+            throw new IllegalStateException();
+        }));
+    }
+
+}
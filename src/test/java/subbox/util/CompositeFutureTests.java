@@ -0,0 +1,99 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+class CompositeFutureTests {
+
+    @Test
+    void testGetReturnsValuesInKeyOrder() throws Exception {
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures(
+                "a", CompletableFuture.completedFuture(1),
+                "b", CompletableFuture.completedFuture(2)
+        ));
+
+        Assertions.assertTrue(future.isDone());
+        Assertions.assertEquals(List.of(1, 2), future.get());
+        Assertions.assertEquals(List.of(1, 2), future.get(0, MILLISECONDS));
+    }
+
+    @Test
+    void testGetAvailableReportsMissingKeys() throws Exception {
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures(
+                "a", CompletableFuture.completedFuture(1),
+                "b", new CompletableFuture<>(),
+                "c", CompletableFuture.completedFuture(3)
+        ));
+
+        CompositeFuture.Partial<String, Integer> partial = future.getAvailable(10, MILLISECONDS);
+
+        Assertions.assertFalse(partial.isComplete());
+        Assertions.assertEquals(List.of(1, 3), partial.getValues());
+        Assertions.assertEquals(List.of("b"), partial.getMissingKeys());
+        Assertions.assertFalse(future.isDone());
+    }
+
+    @Test
+    void testTimedGetThrowsOnTimeout() {
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures(
+                "a", new CompletableFuture<>(),
+                "b", CompletableFuture.completedFuture(2)
+        ));
+
+        Assertions.assertThrows(TimeoutException.class, () -> future.get(1, MILLISECONDS));
+    }
+
+    @Test
+    void testFailurePropagates() {
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures(
+                "a", CompletableFuture.failedFuture(new IllegalStateException()),
+                "b", new CompletableFuture<>()
+        ));
+
+        Assertions.assertThrows(ExecutionException.class, () -> future.getAvailable(1, MILLISECONDS));
+    }
+
+    @Test
+    void testCancelledComponentCancelsComposite() {
+        CompletableFuture<Integer> cancelled = new CompletableFuture<>();
+        cancelled.cancel(false);
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures("a", cancelled, "b", CompletableFuture.completedFuture(2)));
+
+        Assertions.assertTrue(future.isCancelled());
+        Assertions.assertThrows(CancellationException.class, future::get);
+        Assertions.assertThrows(CancellationException.class, () -> future.getAvailable(1, MILLISECONDS));
+    }
+
+    @Test
+    void testMapKeys() throws Exception {
+        CompositeFuture<String, Integer> future = new CompositeFuture<>(futures(
+                "a", CompletableFuture.completedFuture(1),
+                "b", new CompletableFuture<>()
+        ));
+
+        CompositeFuture.Partial<String, Integer> partial = future.mapKeys(String::toUpperCase).getAvailable(0, MILLISECONDS);
+
+        Assertions.assertEquals(List.of("B"), partial.getMissingKeys());
+    }
+
+    private static Map<String, CompletableFuture<Integer>> futures(Object... keysAndFutures) {
+        Map<String, CompletableFuture<Integer>> futures = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndFutures.length; i += 2) {
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Integer> future = (CompletableFuture<Integer>) keysAndFutures[i + 1];
+            futures.put((String) keysAndFutures[i], future);
+        }
+        return futures;
+    }
+
+}
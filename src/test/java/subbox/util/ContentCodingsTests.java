@@ -0,0 +1,32 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ContentCodingsTests {
+
+    @Test
+    void testAcceptsListedCoding() {
+        Assertions.assertTrue(ContentCodings.accepts("gzip", "gzip"));
+        Assertions.assertTrue(ContentCodings.accepts("deflate, GZIP;q=0.5, br", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("deflate, br", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts(null, "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("", "gzip"));
+    }
+
+    @Test
+    void testRejectsZeroQuality() {
+        Assertions.assertFalse(ContentCodings.accepts("gzip;q=0", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("gzip ; q=0.0, br", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("gzip;q=invalid", "gzip"));
+    }
+
+    @Test
+    void testWildcard() {
+        Assertions.assertTrue(ContentCodings.accepts("*", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("*;q=0", "gzip"));
+        Assertions.assertFalse(ContentCodings.accepts("gzip;q=0, *", "gzip"));
+        Assertions.assertTrue(ContentCodings.accepts("*;q=0, gzip", "gzip"));
+    }
+
+}
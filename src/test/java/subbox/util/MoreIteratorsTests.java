@@ -0,0 +1,116 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+import static java.util.stream.Collectors.toList;
+
+class MoreIteratorsTests {
+
+    private final Random random = new Random();
+
+    @RepeatedTest(100)
+    void testMergeSortedByKeyMatchesMergeSorted() {
+        List<List<long[]>> lists = randomLists();
+
+        List<Iterator<long[]>> iterators = lists.stream()
+                .map(List::iterator)
+                .collect(toList());
+        List<long[]> expected = drain(MoreIterators.mergeSorted(iterators, Comparator.comparingLong(element -> element[0])));
+
+        List<SortKeyIterator<long[]>> keyIterators = lists.stream()
+                .map(ListSortKeyIterator::new)
+                .collect(toList());
+        List<long[]> actual = drain(MoreIterators.mergeSortedByKey(keyIterators));
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    @Test
+    void testSkip() {
+        List<SortKeyIterator<long[]>> iterators = List.of(
+                new ListSortKeyIterator(List.of(new long[]{1, 0}, new long[]{4, 0})),
+                new ListSortKeyIterator(List.of(new long[]{2, 1}, new long[]{3, 1}))
+        );
+        SortKeyIterator<long[]> merged = MoreIterators.mergeSortedByKey(iterators);
+
+        merged.skip();
+        Assertions.assertEquals(2, merged.peekSortKey());
+        merged.skip();
+        Assertions.assertEquals(3, merged.next()[0]);
+        Assertions.assertEquals(4, merged.next()[0]);
+        Assertions.assertFalse(merged.hasNext());
+        Assertions.assertThrows(NoSuchElementException.class, merged::skip);
+    }
+
+    @Test
+    void testMergeSortedByKeyEmpty() {
+        Assertions.assertFalse(MoreIterators.mergeSortedByKey(List.<SortKeyIterator<Object>>of()).hasNext());
+    }
+
+    private List<List<long[]>> randomLists() {
+        List<List<long[]>> lists = new ArrayList<>();
+        int listCount = random.nextInt(10);
+        for (int i = 0; i < listCount; i++) {
+            List<long[]> list = new ArrayList<>();
+            long key = 0;
+            int size = random.nextInt(20);
+            for (int j = 0; j < size; j++) {
+                key += random.nextInt(3);
+                list.add(new long[]{key, i});
+            }
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    private static <T> List<T> drain(Iterator<T> iterator) {
+        List<T> list = new ArrayList<>();
+        iterator.forEachRemaining(list::add);
+        return list;
+    }
+
+    private static class ListSortKeyIterator implements SortKeyIterator<long[]> {
+        private final List<long[]> list;
+        private int index;
+
+        ListSortKeyIterator(List<long[]> list) {
+            this.list = list;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < list.size();
+        }
+
+        @Override
+        public long[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return list.get(index++);
+        }
+
+        @Override
+        public long peekSortKey() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return list.get(index)[0];
+        }
+
+        @Override
+        public void skip() {
+            next();
+        }
+    }
+
+}
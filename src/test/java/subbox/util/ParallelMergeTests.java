@@ -0,0 +1,167 @@
+package subbox.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static java.util.stream.Collectors.toList;
+
+class ParallelMergeTests {
+
+    private static final ForkJoinPool pool = new ForkJoinPool(4);
+
+    private final Random random = new Random();
+
+    @RepeatedTest(200)
+    void testMatchesSequentialMerge() {
+        List<List<long[]>> lists = randomLists();
+        List<ListRun> runs = lists.stream()
+                .map(list -> new ListRun(list, random.nextInt(4) == 0 ? random.nextInt(list.size() + 1) : list.size()))
+                .collect(toList());
+        long skip = random.nextInt(60);
+        int limit = 1 + random.nextInt(30);
+
+        List<long[]> actual = ParallelMerge.merge(runs, skip, limit, pool, 1 + random.nextInt(8));
+
+        if (actual != null) {
+            Assertions.assertEquals(sequentialMerge(lists, skip, limit), actual);
+        } else {
+            Assertions.assertTrue(runs.stream().anyMatch(run -> !run.isComplete()));
+        }
+    }
+
+    @RepeatedTest(50)
+    void testCompleteRunsAlwaysMerge() {
+        List<List<long[]>> lists = randomLists();
+        List<ListRun> runs = lists.stream()
+                .map(list -> new ListRun(list, list.size()))
+                .collect(toList());
+
+        List<long[]> actual = ParallelMerge.merge(runs, 5, 20, pool, 4);
+
+        Assertions.assertEquals(sequentialMerge(lists, 5, 20), actual);
+    }
+
+    @Test
+    void testIncompleteRunLimitsHorizon() {
+        List<long[]> complete = List.of(new long[]{1, 0}, new long[]{2, 0}, new long[]{5, 0});
+        List<long[]> incomplete = List.of(new long[]{3, 1}, new long[]{4, 1}, new long[]{6, 1});
+
+        Assertions.assertNotNull(ParallelMerge.merge(List.of(new ListRun(complete, 3), new ListRun(incomplete, 2)), 0, 3, pool, 2));
+        Assertions.assertNull(ParallelMerge.merge(List.of(new ListRun(complete, 3), new ListRun(incomplete, 2)), 0, 4, pool, 2));
+        Assertions.assertNull(ParallelMerge.merge(List.of(new ListRun(complete, 3), new ListRun(incomplete, 0)), 0, 1, pool, 2));
+    }
+
+    @Test
+    void testMarksConsumed() {
+        ListRun first = new ListRun(List.of(new long[]{1, 0}, new long[]{3, 0}, new long[]{5, 0}), 3);
+        ListRun second = new ListRun(List.of(new long[]{2, 1}, new long[]{4, 1}, new long[]{6, 1}), 3);
+
+        ParallelMerge.merge(List.of(first, second), 1, 3, pool, 2);
+
+        Assertions.assertEquals(2, first.consumed);
+        Assertions.assertEquals(2, second.consumed);
+    }
+
+    @NotNull
+    private static List<long[]> sequentialMerge(@NotNull List<List<long[]>> lists, long skip, int limit) {
+        List<SortKeyIterator<long[]>> iterators = lists.stream()
+                .map(ListRun::sequentialIterator)
+                .collect(toList());
+        SortKeyIterator<long[]> merged = MoreIterators.mergeSortedByKey(iterators);
+        for (long i = 0; i < skip && merged.hasNext(); i++) {
+            merged.skip();
+        }
+        List<long[]> result = new ArrayList<>();
+        while (result.size() < limit && merged.hasNext()) {
+            result.add(merged.next());
+        }
+        return result;
+    }
+
+    private List<List<long[]>> randomLists() {
+        List<List<long[]>> lists = new ArrayList<>();
+        int count = 1 + random.nextInt(12);
+        for (int i = 0; i < count; i++) {
+            List<long[]> list = new ArrayList<>();
+            long key = random.nextInt(5);
+            int size = random.nextInt(20);
+            for (int j = 0; j < size; j++) {
+                list.add(new long[]{key, i});
+                key += random.nextInt(3);
+            }
+            lists.add(list);
+        }
+        return lists;
+    }
+
+    private static class ListRun implements ParallelMerge.SortedRun<long[]> {
+        private final List<long[]> list;
+        private final int visible;
+        private int consumed;
+
+        ListRun(List<long[]> list, int visible) {
+            this.list = list;
+            this.visible = visible;
+        }
+
+        static SortKeyIterator<long[]> sequentialIterator(List<long[]> list) {
+            return new SortKeyIterator<>() {
+                private int index;
+
+                @Override
+                public long peekSortKey() {
+                    return list.get(index)[0];
+                }
+
+                @Override
+                public void skip() {
+                    index++;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return index < list.size();
+                }
+
+                @Override
+                public long[] next() {
+                    return list.get(index++);
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return visible;
+        }
+
+        @Override
+        public long sortKey(int index) {
+            return list.get(index)[0];
+        }
+
+        @NotNull
+        @Override
+        public long[] get(int index) {
+            return list.get(index);
+        }
+
+        @Override
+        public boolean isComplete() {
+            return visible == list.size();
+        }
+
+        @Override
+        public void markConsumed(int count) {
+            consumed = count;
+        }
+    }
+
+}
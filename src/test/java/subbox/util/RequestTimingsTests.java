@@ -0,0 +1,71 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RequestTimingsTests {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    void testServerTiming() {
+        RequestTimings timings = new RequestTimings(false, now::get);
+        try (RequestTimings.Stage ignored = timings.startStage("channels")) {
+            now.addAndGet(1_500_000);
+        }
+        try (RequestTimings.Stage ignored = timings.startStage("playlists")) {
+            now.addAndGet(250_000);
+        }
+        try (RequestTimings.Stage ignored = timings.startStage("channels")) {
+            now.addAndGet(500_000);
+        }
+
+        Assertions.assertEquals("channels;dur=2.000, playlists;dur=0.250, total;dur=2.250", timings.toServerTiming());
+    }
+
+    @Test
+    void testTraceIncludesStages() {
+        RequestTimings timings = new RequestTimings(true, now::get);
+        try (RequestTimings.Stage ignored = timings.startStage("merge")) {
+            now.addAndGet(1_000_000);
+        }
+
+        Map<String, Object> trace = timings.toTrace();
+        Assertions.assertEquals(1.0, trace.get("totalMs"));
+        Assertions.assertEquals(Map.of("merge", 1.0), trace.get("stagesMs"));
+    }
+
+    @Test
+    void testThreadLocalLifecycle() {
+        Assertions.assertNull(RequestTimings.current());
+        Assertions.assertDoesNotThrow(() -> RequestTimings.stage("unused").close());
+        RequestTimings.record("ignored", 1);
+
+        RequestTimings timings = RequestTimings.start(true);
+        try {
+            Assertions.assertSame(timings, RequestTimings.current());
+            Assertions.assertTrue(RequestTimings.isSampled());
+            RequestTimings.record("pageCache", "hit");
+            Assertions.assertEquals("hit", timings.toTrace().get("pageCache"));
+        } finally {
+            RequestTimings.end();
+        }
+        Assertions.assertNull(RequestTimings.current());
+        Assertions.assertFalse(RequestTimings.isSampled());
+    }
+
+    @Test
+    void testUnsampledIgnoresAttributes() {
+        RequestTimings timings = RequestTimings.start(false);
+        try {
+            RequestTimings.record("pageCache", "hit");
+            Assertions.assertFalse(timings.toTrace().containsKey("pageCache"));
+        } finally {
+            RequestTimings.end();
+        }
+    }
+
+}
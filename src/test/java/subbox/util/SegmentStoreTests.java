@@ -0,0 +1,160 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+class SegmentStoreTests {
+
+    @Test
+    void testPutAndTake() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+            Assertions.assertTrue(store.put("a", bytes("first")));
+            Assertions.assertTrue(store.put("b", bytes("second")));
+
+            Assertions.assertTrue(store.contains("a"));
+            Assertions.assertArrayEquals(bytes("first"), store.take("a"));
+            Assertions.assertFalse(store.contains("a"));
+            Assertions.assertNull(store.take("a"));
+            Assertions.assertEquals(1, store.size());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testOverwriteReplacesLiveBytes() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+            store.put("a", bytes("first"));
+            long liveBytes = store.getLiveBytes();
+            store.put("a", bytes("third"));
+
+            Assertions.assertEquals(liveBytes, store.getLiveBytes());
+            Assertions.assertEquals(2 * liveBytes, store.getFileBytes());
+            Assertions.assertArrayEquals(bytes("third"), store.take("a"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testRecoversIndexOnReopen() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        try {
+            try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+                store.put("a", bytes("first"));
+                store.put("b", bytes("second"));
+                store.put("b", bytes("third"));
+                store.take("a");
+            }
+
+            try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+                Assertions.assertFalse(store.contains("a"));
+                Assertions.assertEquals(1, store.size());
+                Assertions.assertArrayEquals(bytes("third"), store.take("b"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testIgnoresTornRecord() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        try {
+            long validBytes;
+            try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+                store.put("a", bytes("first"));
+                validBytes = store.getFileBytes();
+                store.put("b", bytes("second"));
+            }
+            try (FileChannel channel = FileChannel.open(file, WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+
+            try (SegmentStore store = new SegmentStore(file, 1 << 20)) {
+                Assertions.assertEquals(validBytes, store.getFileBytes());
+                Assertions.assertFalse(store.contains("b"));
+                Assertions.assertArrayEquals(bytes("first"), store.take("a"));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testCompactionBoundsFile() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        byte[] value = new byte[100];
+        try (SegmentStore store = new SegmentStore(file, 4096)) {
+            for (int i = 0; i < 200; i++) {
+                Arrays.fill(value, (byte) i);
+                store.put("key" + i, value);
+                if (i % 3 == 0) {
+                    store.take("key" + i);
+                }
+                Assertions.assertTrue(store.getFileBytes() <= 4096);
+            }
+
+            Assertions.assertTrue(store.contains("key199"));
+            Assertions.assertFalse(store.contains("key1"));
+            Assertions.assertArrayEquals(value, store.take("key199"));
+            Assertions.assertTrue(store.size() > 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testTombstonesKeepFileBounded() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        byte[] value = new byte[8];
+        try (SegmentStore store = new SegmentStore(file, 4096)) {
+            // fill the file up to the bound without triggering a compaction
+            int count = 0;
+            store.put(String.format("key%03d", count++), value);
+            long recordBytes = store.getFileBytes();
+            while (store.getFileBytes() + recordBytes <= 4096) {
+                store.put(String.format("key%03d", count++), value);
+            }
+            Assertions.assertEquals(0L, store.getStats().get("compactions"));
+
+            // compacting may drop the oldest entries before they are taken
+            for (int i = 0; i < count; i++) {
+                store.take(String.format("key%03d", i));
+                Assertions.assertTrue(store.getFileBytes() <= 4096);
+            }
+            Assertions.assertEquals(0, store.size());
+            Assertions.assertEquals(1L, store.getStats().get("compactions"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void testRejectsOversizedValue() throws IOException {
+        Path file = Files.createTempFile("segments", ".seg");
+        try (SegmentStore store = new SegmentStore(file, 4096)) {
+            Assertions.assertFalse(store.put("a", new byte[4096]));
+            Assertions.assertFalse(store.contains("a"));
+            Assertions.assertEquals(0, store.getFileBytes());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+}
@@ -0,0 +1,79 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+class SingleFlightTests {
+
+    private final SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+
+    @Test
+    void testReportsUncollapsedCalls() throws Exception {
+        SingleFlight.Result<Integer> result = singleFlight.execute("key", () -> 1);
+
+        Assertions.assertEquals(1, (int) result.getValue());
+        Assertions.assertFalse(result.isCollapsed());
+    }
+
+    @Test
+    void testCollapsesConcurrentCalls() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SingleFlight.Result<Integer>> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                started.countDown();
+                release.await();
+                return executions.incrementAndGet();
+            }));
+            Assertions.assertTrue(started.await(10, SECONDS));
+
+            Future<SingleFlight.Result<Integer>> follower = executor.submit(() -> singleFlight.execute("key", executions::incrementAndGet));
+            while (((Number) singleFlight.getStats().get("collapsed")).longValue() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            SingleFlight.Result<Integer> leaderResult = leader.get(10, SECONDS);
+            SingleFlight.Result<Integer> followerResult = follower.get(10, SECONDS);
+            Assertions.assertEquals(1, (int) leaderResult.getValue());
+            Assertions.assertFalse(leaderResult.isCollapsed());
+            Assertions.assertEquals(1, (int) followerResult.getValue());
+            Assertions.assertTrue(followerResult.isCollapsed());
+            Assertions.assertEquals(1, executions.get());
+            Assertions.assertEquals(0.5, singleFlight.getStats().get("collapseRate"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testDoesNotCacheCompletedCalls() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        Assertions.assertEquals(1, (int) singleFlight.execute("key", executions::incrementAndGet).getValue());
+        Assertions.assertEquals(2, (int) singleFlight.execute("key", executions::incrementAndGet).getValue());
+    }
+
+    @Test
+    void testPropagatesFailures() {
+        Assertions.assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException();
+        }));
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> singleFlight.execute("key", () -> {
+            throw new Exception("checked");
+        }));
+        Assertions.assertEquals("checked", e.getCause().getMessage());
+    }
+
+}
@@ -0,0 +1,60 @@
+package subbox.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class SlabAllocatorTests {
+
+    private final SlabAllocator allocator = new SlabAllocator(1024, 2);
+
+    @Test
+    void testRoundsToSizeClasses() {
+        allocator.allocate(100);
+        allocator.allocate(10);
+
+        Assertions.assertEquals(110, allocator.getRequestedBytes());
+        Assertions.assertEquals(128 + 64, allocator.getAllocatedBytes());
+        Assertions.assertEquals(1024, allocator.getCapacityBytes());
+    }
+
+    @Test
+    void testReusesFreedBlocks() {
+        long address = allocator.allocate(100);
+        allocator.free(address, 100);
+
+        Assertions.assertEquals(128, allocator.getFreeListBytes());
+        Assertions.assertEquals(address, allocator.allocate(70));
+        Assertions.assertEquals(0, allocator.getFreeListBytes());
+    }
+
+    @Test
+    void testSplitsLargerFreeBlocksWhenFull() {
+        allocator.allocate(1024);
+        long address = allocator.allocate(1024);
+        allocator.free(address, 1024);
+
+        long small = allocator.allocate(64);
+        Assertions.assertNotEquals(SlabAllocator.NO_SPACE, small);
+        Assertions.assertEquals(1024 - 64, allocator.getFreeListBytes());
+        Assertions.assertEquals(SlabAllocator.NO_SPACE, allocator.allocate(1024));
+    }
+
+    @Test
+    void testRejectsOversizedAllocations() {
+        Assertions.assertEquals(SlabAllocator.NO_SPACE, allocator.allocate(1025));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SlabAllocator(1000, 1));
+    }
+
+    @Test
+    void testSlicesAreIsolated() {
+        long first = allocator.allocate(64);
+        long second = allocator.allocate(64);
+        allocator.slice(first, 64).putLong(0, 42);
+        allocator.slice(second, 64).putLong(0, 7);
+
+        Assertions.assertEquals(42, allocator.slice(first, 64).getLong(0));
+        Assertions.assertEquals(7, allocator.slice(second, 64).getLong(0));
+        Assertions.assertEquals(64, allocator.slice(first, 64).capacity());
+    }
+
+}